@@ -0,0 +1,71 @@
+package gate.benchmarks;
+
+import gate.creole.AbstractLanguageAnalyser;
+import gate.creole.ExecutionException;
+import gate.creole.metadata.CreoleParameter;
+import gate.creole.metadata.CreoleResource;
+import gate.creole.metadata.Optional;
+import gate.creole.metadata.RunTime;
+import gate.util.InvalidOffsetException;
+
+@CreoleResource(name = "BenchmarkAnalyser", comment = "Language analyser for benchmarks, which burns cpu and optionally adds a token annotation per word")
+public class BenchmarkAnalyser extends AbstractLanguageAnalyser {
+	private static final long serialVersionUID = -1190423462127733593L;
+
+	private Integer work;
+	private Boolean annotate;
+
+	private volatile long sink;
+
+	@Override
+	public void execute() throws ExecutionException {
+		String content = document.getContent().toString();
+		long hash = 0;
+		for (int i = 0; i < work; i++) {
+			for (int c = 0; c < content.length(); c++) {
+				hash = 31 * hash + content.charAt(c);
+			}
+		}
+		sink = hash;
+
+		if (annotate) {
+			int start = -1;
+			for (int c = 0; c <= content.length(); c++) {
+				boolean whitespace = c == content.length() || Character.isWhitespace(content.charAt(c));
+				if (whitespace && start >= 0) {
+					try {
+						document.getAnnotations("benchmark").add((long) start, (long) c, "Token", null);
+					} catch (InvalidOffsetException e) {
+						throw new ExecutionException(e);
+					}
+					start = -1;
+				} else if (!whitespace && start < 0) {
+					start = c;
+				}
+			}
+		}
+	}
+
+	public Integer getWork() {
+		return work;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "iterations over the document content", defaultValue = "1")
+	public void setWork(Integer work) {
+		this.work = work;
+	}
+
+	public Boolean getAnnotate() {
+		return annotate;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "add a token annotation per word", defaultValue = "false")
+	public void setAnnotate(Boolean annotate) {
+		this.annotate = annotate;
+	}
+
+}
@@ -0,0 +1,64 @@
+package gate.benchmarks;
+
+import java.util.Random;
+
+import gate.Corpus;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Gate;
+import gate.ProcessingResource;
+import gate.controllers.ConditionalParallelDocumentAnalyserController;
+import gate.controllers.ParallelDocumentAnalyserController;
+import gate.languageanalysers.CacheReadAndAdd;
+import gate.languageanalysers.CacheReadAndCopy;
+import gate.languageanalysers.CacheWrite;
+import gate.util.GateException;
+
+final class Benchmarks {
+
+	private static final String[] WORDS = { "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "gate",
+			"pipeline", "document", "corpus", "cache", "parallel", "controller", "annotation" };
+
+	private Benchmarks() {
+	}
+
+	static synchronized void initGate() throws GateException {
+		if (!Gate.isInitialised()) {
+			Gate.init();
+			Gate.getCreoleRegister().registerComponent(ParallelDocumentAnalyserController.class);
+			Gate.getCreoleRegister().registerComponent(ConditionalParallelDocumentAnalyserController.class);
+			Gate.getCreoleRegister().registerComponent(CacheWrite.class);
+			Gate.getCreoleRegister().registerComponent(CacheReadAndCopy.class);
+			Gate.getCreoleRegister().registerComponent(CacheReadAndAdd.class);
+			Gate.getCreoleRegister().registerComponent(BenchmarkAnalyser.class);
+		}
+	}
+
+	/**
+	 * Builds a transient corpus, in which documents are drawn from distinctDocuments
+	 * different contents.
+	 */
+	static Corpus buildCorpus(int documents, int distinctDocuments, int words) throws GateException {
+		Corpus corpus = Factory.newCorpus("benchmark");
+		for (int i = 0; i < documents; i++) {
+			Random random = new Random(i % distinctDocuments);
+			StringBuilder content = new StringBuilder();
+			for (int w = 0; w < words; w++) {
+				if (w > 0) {
+					content.append(' ');
+				}
+				content.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			corpus.add(Factory.newDocument(content.toString()));
+		}
+		return corpus;
+	}
+
+	static ProcessingResource createAnalyser(int work, boolean annotate) throws GateException {
+		FeatureMap parameters = Factory.newFeatureMap();
+		parameters.put("work", work);
+		parameters.put("annotate", annotate);
+		return (ProcessingResource) Factory.createResource(BenchmarkAnalyser.class.getName(), parameters);
+	}
+
+}
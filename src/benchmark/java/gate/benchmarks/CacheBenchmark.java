@@ -0,0 +1,106 @@
+package gate.benchmarks;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.ProcessingResource;
+import gate.controllers.ParallelDocumentAnalyserController;
+import gate.languageanalysers.Cache;
+import gate.languageanalysers.CacheReadAndCopy;
+import gate.languageanalysers.CacheWrite;
+
+/**
+ * Pipeline CacheReadAndCopy, expensive analyser, CacheWrite on a corpus with
+ * many duplicates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CacheBenchmark {
+
+	private static final String CACHE_NAME = "benchmark";
+
+	@Param({ "1", "4" })
+	private int parallelTasks;
+
+	@Param({ "10", "100" })
+	private int distinctDocuments;
+
+	@Param({ "1000" })
+	private int documents;
+
+	@Param({ "SHA-1" })
+	private String hashAlgorithm;
+
+	private Corpus corpus;
+	private ParallelDocumentAnalyserController controller;
+
+	@Setup
+	public void setup() throws Exception {
+		Benchmarks.initGate();
+		corpus = Benchmarks.buildCorpus(documents, distinctDocuments, 500);
+
+		controller = (ParallelDocumentAnalyserController) Factory
+				.createResource(ParallelDocumentAnalyserController.class.getName());
+		controller.add((ProcessingResource) Factory.createResource(CacheReadAndCopy.class.getName(),
+				readParameters()));
+		controller.add(Benchmarks.createAnalyser(100, true));
+		controller.add((ProcessingResource) Factory.createResource(CacheWrite.class.getName(), cacheParameters()));
+		controller.setCorpus(corpus);
+		controller.setParallelTasks(parallelTasks);
+		controller.setOrderedDocumentLoading(true);
+		controller.setSynchronizeCorpus(true);
+		controller.setFailOnException(true);
+	}
+
+	private FeatureMap cacheParameters() {
+		FeatureMap cacheParameters = Factory.newFeatureMap();
+		cacheParameters.put("cacheName", CACHE_NAME);
+		cacheParameters.put("hashAlgorithm", hashAlgorithm);
+		return cacheParameters;
+	}
+
+	private FeatureMap readParameters() {
+		FeatureMap readParameters = cacheParameters();
+		readParameters.put("annotationSetNames", new HashSet<>(Collections.singleton("benchmark")));
+		readParameters.put("relationSetNames", new HashSet<>(Collections.singleton("benchmark")));
+		readParameters.put("featureKeys", new HashSet<>());
+		return readParameters;
+	}
+
+	@Setup(Level.Invocation)
+	public void resetDocuments() {
+		Cache.getInstance(CACHE_NAME).clear();
+		for (Document document : corpus) {
+			document.removeAnnotationSet("benchmark");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		Factory.deleteResource(controller);
+		Factory.deleteResource(corpus);
+	}
+
+	@Benchmark
+	public void execute() throws Exception {
+		controller.execute();
+	}
+
+}
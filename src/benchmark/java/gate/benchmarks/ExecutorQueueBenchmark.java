@@ -0,0 +1,74 @@
+package gate.benchmarks;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import gate.controllers.ConcurrentExecutorQueue;
+import gate.controllers.ExecutorQueue;
+import gate.controllers.TaskQueue;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutorQueueBenchmark {
+
+	private static final int TASKS = 10000;
+
+	@Param({ "1", "4", "16", "64" })
+	private int maxParallelTasks;
+
+	@Param({ "false", "true" })
+	private boolean concurrentQueue;
+
+	private ExecutorService executor;
+	private final AtomicLong counter = new AtomicLong();
+
+	@Setup
+	public void setup() {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TASKS)
+	public long submitTasks() throws Exception {
+		TaskQueue queue = concurrentQueue ? new ConcurrentExecutorQueue(executor, maxParallelTasks)
+				: new ExecutorQueue(executor, maxParallelTasks);
+		queue.submit(new Iterator<Runnable>() {
+
+			private int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < TASKS;
+			}
+
+			@Override
+			public Runnable next() {
+				i++;
+				return () -> counter.incrementAndGet();
+			}
+		});
+		queue.awaitCompleted();
+		return counter.get();
+	}
+
+}
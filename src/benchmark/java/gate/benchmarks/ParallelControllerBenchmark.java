@@ -0,0 +1,68 @@
+package gate.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import gate.Corpus;
+import gate.Factory;
+import gate.controllers.ParallelDocumentAnalyserController;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelControllerBenchmark {
+
+	@Param({ "1", "2", "4", "8" })
+	private int parallelTasks;
+
+	@Param({ "1", "100" })
+	private int work;
+
+	@Param({ "true", "false" })
+	private boolean orderedDocumentLoading;
+
+	@Param({ "true", "false" })
+	private boolean synchronizeCorpus;
+
+	@Param({ "1000" })
+	private int documents;
+
+	private Corpus corpus;
+	private ParallelDocumentAnalyserController controller;
+
+	@Setup
+	public void setup() throws Exception {
+		Benchmarks.initGate();
+		corpus = Benchmarks.buildCorpus(documents, documents, 200);
+		controller = (ParallelDocumentAnalyserController) Factory
+				.createResource(ParallelDocumentAnalyserController.class.getName());
+		controller.add(Benchmarks.createAnalyser(work, false));
+		controller.add(Benchmarks.createAnalyser(1, true));
+		controller.setCorpus(corpus);
+		controller.setParallelTasks(parallelTasks);
+		controller.setOrderedDocumentLoading(orderedDocumentLoading);
+		controller.setSynchronizeCorpus(synchronizeCorpus);
+		controller.setFailOnException(true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		Factory.deleteResource(controller);
+		Factory.deleteResource(corpus);
+	}
+
+	@Benchmark
+	public void execute() throws Exception {
+		controller.execute();
+	}
+
+}
@@ -0,0 +1,165 @@
+package gate.controllers;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gate.controllers.ExecutorQueue.FailedFuture;
+
+/**
+ * Task queue without a shared monitor: the task iterators are only advanced by
+ * the thread owning the dispatch flag.
+ */
+public class ConcurrentExecutorQueue implements TaskQueue {
+
+	private static final Future<?> WAKEUP = new FutureTask<>(() -> null);
+
+	private final ExecutorService executor;
+	private final int maxParallelTasks;
+
+	private volatile boolean interrupted = false;
+	private final AtomicInteger submittedTasks = new AtomicInteger();
+	private final AtomicInteger pendingFutures = new AtomicInteger();
+	private final AtomicBoolean dispatching = new AtomicBoolean();
+	private final Queue<Iterator<Runnable>> tasksQueue = new ConcurrentLinkedQueue<>();
+	private final BlockingQueue<Future<?>> completedFutures = new LinkedBlockingQueue<>();
+
+	public ConcurrentExecutorQueue(ExecutorService executor, int maxSubmittedTasks) {
+		this.executor = executor;
+		this.maxParallelTasks = maxSubmittedTasks;
+	}
+
+	@Override
+	public void submit(Iterator<Runnable> tasks) {
+		interrupted = false;
+		tasksQueue.add(tasks);
+
+		executeNext();
+	}
+
+	@Override
+	public void interrupt() {
+		interrupted = true;
+		tasksQueue.clear();
+		completedFutures.offer(WAKEUP);
+	}
+
+	@Override
+	public boolean isInterrupted() {
+		return interrupted;
+	}
+
+	@Override
+	public boolean hasCompleted() {
+		return tasksQueue.isEmpty() && submittedTasks.get() == 0 && pendingFutures.get() == 0;
+	}
+
+	private void executeNext() {
+		while (!interrupted && dispatching.compareAndSet(false, true)) {
+			try {
+				while (!interrupted && submittedTasks.get() < maxParallelTasks) {
+					Iterator<Runnable> tasksIterator = tasksQueue.peek();
+					if (tasksIterator == null) {
+						break;
+					}
+					if (!tasksIterator.hasNext()) {
+						tasksQueue.poll();
+						continue;
+					}
+					Runnable next = null;
+					Exception exception = null;
+					try {
+						next = tasksIterator.next();
+					} catch (Exception e) {
+						exception = e;
+					}
+					if (exception != null) {
+						completed(new FailedFuture<>(exception));
+					} else if (next == null) {
+						completed(new FailedFuture<>(new NullPointerException("runnable is null")));
+					} else {
+						submittedTasks.incrementAndGet();
+						pendingFutures.incrementAndGet();
+						try {
+							executor.execute(new RunnableTask(this, next));
+						} catch (RejectedExecutionException e) {
+							submittedTasks.decrementAndGet();
+							pendingFutures.decrementAndGet();
+							completed(new FailedFuture<>(e));
+						}
+					}
+				}
+			} finally {
+				dispatching.set(false);
+			}
+			if (tasksQueue.isEmpty()) {
+				// wake up waiting threads, which may have seen an exhausted iterator
+				completedFutures.offer(WAKEUP);
+				break;
+			}
+			if (submittedTasks.get() >= maxParallelTasks) {
+				break;
+			}
+		}
+	}
+
+	private void completed(Future<?> future) {
+		pendingFutures.incrementAndGet();
+		completedFutures.offer(future);
+	}
+
+	private void finishedTask(RunnableTask runnableTask) {
+		submittedTasks.decrementAndGet();
+		executeNext();
+	}
+
+	@Override
+	public void awaitCompleted() throws InterruptedException, ExecutionException {
+		while ((!interrupted && !hasCompleted()) || (interrupted && pendingFutures.get() > 0)) {
+			if (!interrupted && (executor.isShutdown() || executor.isTerminated())) {
+				throw new IllegalStateException();
+			}
+			Future<?> future = completedFutures.take();
+			if (future == WAKEUP) {
+				continue;
+			}
+			pendingFutures.decrementAndGet();
+			future.get();
+		}
+	}
+
+	private static class RunnableTask extends FutureTask<Void> {
+
+		private ConcurrentExecutorQueue queue;
+
+		public RunnableTask(ConcurrentExecutorQueue queue, Runnable runnable) {
+			super(runnable, null);
+			this.queue = queue;
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				queue.finishedTask(this);
+			}
+		}
+
+		@Override
+		protected void done() {
+			queue.completedFutures.offer(this);
+		}
+
+	}
+
+}
@@ -24,7 +24,7 @@ public class ConditionalParallelDocumentAnalyserController extends ParallelDocum
 	private static Logger logger = Logger.getLogger(ConditionalParallelDocumentAnalyserController.class);
 
 	protected List<RunningStrategy> strategiesList = new ArrayList<>();
-	private Map<ProcessingResource, List<RunningStrategy>> parallelRunningStrategies;
+	private volatile Map<ProcessingResource, List<RunningStrategy>> parallelRunningStrategies;
 
 	@Override
 	public void cleanup() {
@@ -53,9 +53,20 @@ public class ConditionalParallelDocumentAnalyserController extends ParallelDocum
 		return parallelProcessingResources;
 	}
 
+	@Override
+	protected synchronized void pipelineDuplicated(List<ProcessingResource> duplicatedResources) {
+		super.pipelineDuplicated(duplicatedResources);
+		Map<ProcessingResource, List<RunningStrategy>> mappedStrategies = new IdentityHashMap<>(
+				parallelRunningStrategies);
+		mappedStrategies.putAll(buildParallelRunningStrategies(Collections.singletonList(duplicatedResources)));
+		parallelRunningStrategies = mappedStrategies;
+	}
+
 	@Override
 	protected void cleanupDuplicatedResources(Collection<List<ProcessingResource>> parallelProcessingResources) {
-		parallelRunningStrategies.clear();
+		if (parallelRunningStrategies != null) {
+			parallelRunningStrategies.clear();
+		}
 		super.cleanupDuplicatedResources(parallelProcessingResources);
 	}
 
@@ -89,11 +100,15 @@ public class ConditionalParallelDocumentAnalyserController extends ParallelDocum
 					.get(processingResourceIndex);
 			if (runningStrategy.shouldRun()) {
 				super.runComponent(documentIndex, processingResourceIndex, processingResource);
+			} else if (metrics != null) {
+				metrics.processingResourceSkipped(processingResourceIndex);
 			}
 		} else if (isNoneParallelExecution()) {
 			RunningStrategy runningStrategy = strategiesList.get(processingResourceIndex);
 			if (runningStrategy.shouldRun()) {
 				super.runComponent(documentIndex, processingResourceIndex, processingResource);
+			} else if (metrics != null) {
+				metrics.processingResourceSkipped(processingResourceIndex);
 			}
 		}
 	}
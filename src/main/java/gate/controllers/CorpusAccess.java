@@ -0,0 +1,235 @@
+package gate.controllers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.Resource;
+import gate.event.CreoleEvent;
+import gate.event.CreoleListener;
+
+/**
+ * Access to the documents of a corpus shared by the parallel controllers and
+ * the cache PRs, serialized on the corpus or (striped) per document index.
+ */
+public class CorpusAccess {
+	private static Logger logger = Logger.getLogger(CorpusAccess.class);
+
+	private static final int STRIPES = 64;
+
+	private static final Map<CorpusInstance, CorpusAccess> instances = new ConcurrentHashMap<>();
+	private static CreoleListener unloadListener;
+
+	public static CorpusAccess getInstance(Corpus corpus) {
+		CorpusAccess corpusAccess = instances.get(new CorpusInstance(corpus));
+		if (corpusAccess == null) {
+			corpusAccess = register(corpus, false);
+		}
+		return corpusAccess;
+	}
+
+	/**
+	 * The mode is fixed by the first registration of the corpus, so all users of
+	 * a corpus lock the same objects.
+	 */
+	public static CorpusAccess getInstance(Corpus corpus, boolean striped) {
+		CorpusAccess corpusAccess = instances.get(new CorpusInstance(corpus));
+		if (corpusAccess == null) {
+			corpusAccess = register(corpus, striped);
+		}
+		if (corpusAccess.striped != striped) {
+			logger.warn("corpus " + corpus.getName() + " is already accessed "
+					+ (corpusAccess.striped ? "striped" : "not striped") + ", requested mode is ignored");
+		}
+		return corpusAccess;
+	}
+
+	private static CorpusAccess register(Corpus corpus, boolean striped) {
+		synchronized (CorpusAccess.class) {
+			if (unloadListener == null) {
+				unloadListener = new CorpusUnloadListener();
+				Gate.addCreoleListener(unloadListener);
+			}
+		}
+		return instances.computeIfAbsent(new CorpusInstance(corpus), key -> new CorpusAccess(corpus, striped));
+	}
+
+	private final Corpus corpus;
+	private final boolean striped;
+	private final ReadWriteLock corpusLock;
+	private final Lock[] indexLocks;
+
+	private CorpusAccess(Corpus corpus, boolean striped) {
+		this.corpus = corpus;
+		this.striped = striped;
+		if (striped) {
+			corpusLock = new ReentrantReadWriteLock();
+			indexLocks = new Lock[STRIPES];
+			for (int i = 0; i < STRIPES; i++) {
+				indexLocks[i] = new ReentrantLock();
+			}
+		} else {
+			corpusLock = null;
+			indexLocks = null;
+		}
+	}
+
+	public Corpus getCorpus() {
+		return corpus;
+	}
+
+	public boolean isStriped() {
+		return striped;
+	}
+
+	/**
+	 * Runs an action, which accesses only the document at the given index (e.g.
+	 * load, process and unload a document).
+	 */
+	public <T> T access(int index, Supplier<T> action) {
+		if (!striped) {
+			synchronized (corpus) {
+				return action.get();
+			}
+		}
+		Lock readLock = corpusLock.readLock();
+		Lock indexLock = indexLocks[Math.floorMod(index, STRIPES)];
+		readLock.lock();
+		try {
+			indexLock.lock();
+			try {
+				return action.get();
+			} finally {
+				indexLock.unlock();
+			}
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Runs an action, which reads the corpus without loading or unloading
+	 * documents (e.g. size, indexOf).
+	 */
+	public <T> T read(Supplier<T> action) {
+		if (!striped) {
+			synchronized (corpus) {
+				return action.get();
+			}
+		}
+		Lock readLock = corpusLock.readLock();
+		readLock.lock();
+		try {
+			return action.get();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Runs an action, which modifies the corpus (e.g. add or remove documents).
+	 */
+	public <T> T write(Supplier<T> action) {
+		if (!striped) {
+			synchronized (corpus) {
+				return action.get();
+			}
+		}
+		Lock writeLock = corpusLock.writeLock();
+		writeLock.lock();
+		try {
+			return action.get();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	public boolean isDocumentLoaded(int index) {
+		return access(index, () -> corpus.isDocumentLoaded(index));
+	}
+
+	public Document get(int index) {
+		return access(index, () -> corpus.get(index));
+	}
+
+	public int indexOf(Document document) {
+		return read(() -> corpus.indexOf(document));
+	}
+
+	public void unload(int index, Document document) {
+		access(index, () -> {
+			Factory.deleteResource(document);
+			return null;
+		});
+	}
+
+	private static class CorpusUnloadListener implements CreoleListener {
+
+		@Override
+		public void resourceLoaded(CreoleEvent e) {
+
+		}
+
+		@Override
+		public void resourceUnloaded(CreoleEvent e) {
+			if (e.getResource() instanceof Corpus) {
+				instances.remove(new CorpusInstance((Corpus) e.getResource()));
+			}
+		}
+
+		@Override
+		public void datastoreOpened(CreoleEvent e) {
+
+		}
+
+		@Override
+		public void datastoreCreated(CreoleEvent e) {
+
+		}
+
+		@Override
+		public void datastoreClosed(CreoleEvent e) {
+
+		}
+
+		@Override
+		public void resourceRenamed(Resource resource, String oldName, String newName) {
+
+		}
+
+	}
+
+	/**
+	 * Identity key of a corpus.
+	 */
+	private static class CorpusInstance {
+
+		private final Corpus corpus;
+
+		private CorpusInstance(Corpus corpus) {
+			this.corpus = corpus;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(corpus);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof CorpusInstance && ((CorpusInstance) obj).corpus == corpus;
+		}
+
+	}
+
+}
@@ -0,0 +1,13 @@
+package gate.controllers;
+
+import gate.Document;
+
+/**
+ * Notified on the processing thread, when a document has passed the pipeline
+ * (also after a failure).
+ */
+public interface DocumentCompletionAware {
+
+	public void documentCompleted(Document document);
+
+}
@@ -0,0 +1,326 @@
+package gate.controllers;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+import org.apache.log4j.Logger;
+
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.corpora.DocumentImpl;
+import gate.languageanalysers.ContentDigester;
+import gate.relations.Relation;
+import gate.relations.RelationSet;
+import gate.relations.SimpleRelation;
+import gate.util.GateRuntimeException;
+import gate.util.InvalidOffsetException;
+
+/**
+ * Runs the pipeline only once per distinct document content of an execution
+ * and copies the results to the duplicates.
+ */
+class DocumentDeduplicator<T> {
+	private static Logger logger = Logger.getLogger(DocumentDeduplicator.class);
+
+	// documents are registered on the prefetch thread or by the parallel tasks
+	private static final ThreadLocal<MessageDigest> messageDigests = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new GateRuntimeException(e);
+		}
+	});
+	private static final ThreadLocal<ContentDigester> contentDigesters = ThreadLocal
+			.withInitial(ContentDigester::new);
+
+	private final Function<T, Document> documentOf;
+	private final ToIntFunction<T> indexOf;
+	private final IntFunction<T> loader;
+	private final Consumer<T> releaser;
+	private final ExecutionMetrics metrics;
+
+	private final Map<ByteBuffer, List<Integer>> processing = new HashMap<>();
+	private final Map<T, ByteBuffer> processingKeys = new IdentityHashMap<>();
+	private final Map<ByteBuffer, DocumentResults> completed;
+
+	DocumentDeduplicator(int maxCompletedResults, Function<T, Document> documentOf, ToIntFunction<T> indexOf,
+			IntFunction<T> loader, Consumer<T> releaser, ExecutionMetrics metrics) {
+		this.documentOf = documentOf;
+		this.indexOf = indexOf;
+		this.loader = loader;
+		this.releaser = releaser;
+		this.metrics = metrics;
+		this.completed = new LinkedHashMap<ByteBuffer, DocumentResults>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<ByteBuffer, DocumentResults> eldest) {
+				return size() > maxCompletedResults;
+			}
+		};
+	}
+
+	/**
+	 * @return true, if the document has to be processed, false if it is a
+	 *         duplicate, which was released (and must not be released by the
+	 *         caller again)
+	 */
+	public boolean register(T loaded) {
+		ByteBuffer key = hash(documentOf.apply(loaded));
+		DocumentResults results;
+		synchronized (this) {
+			results = completed.get(key);
+			if (results == null) {
+				List<Integer> duplicates = processing.get(key);
+				if (duplicates == null) {
+					processing.put(key, new ArrayList<>());
+					processingKeys.put(loaded, key);
+					return true;
+				}
+				duplicates.add(indexOf.applyAsInt(loaded));
+			}
+		}
+		if (results != null) {
+			fanOut(results, loaded);
+		} else {
+			releaser.accept(loaded);
+		}
+		return false;
+	}
+
+	/**
+	 * Copies the results of a processed document to its waiting duplicates, must
+	 * be called before the document is released.
+	 */
+	public void completed(T loaded) {
+		DocumentResults results = new DocumentResults(documentOf.apply(loaded));
+		List<Integer> duplicates;
+		synchronized (this) {
+			ByteBuffer key = processingKeys.remove(loaded);
+			if (key == null) {
+				return;
+			}
+			duplicates = processing.remove(key);
+			completed.put(key, results);
+		}
+		for (int duplicate : duplicates) {
+			fanOut(results, loader.apply(duplicate));
+		}
+	}
+
+	/**
+	 * Drops the waiting duplicates of a document, which failed or was
+	 * interrupted, without results.
+	 */
+	public void failed(T loaded) {
+		List<Integer> duplicates;
+		synchronized (this) {
+			ByteBuffer key = processingKeys.remove(loaded);
+			if (key == null) {
+				return;
+			}
+			duplicates = processing.remove(key);
+		}
+		for (int duplicate : duplicates) {
+			logger.error("duplicate document at index " + duplicate + " not processed, since processing of "
+					+ documentOf.apply(loaded).getName() + " failed or was interrupted");
+		}
+	}
+
+	/**
+	 * Drops all still waiting duplicates (e.g. after an interrupted execution)
+	 * and the kept results.
+	 */
+	public synchronized void close() {
+		processing.clear();
+		processingKeys.clear();
+		completed.clear();
+	}
+
+	private void fanOut(DocumentResults results, T duplicate) {
+		try {
+			results.copyTo(documentOf.apply(duplicate));
+			if (metrics != null) {
+				metrics.documentDeduplicated();
+			}
+		} finally {
+			releaser.accept(duplicate);
+		}
+	}
+
+	private static ByteBuffer hash(Document document) {
+		String content = document.getContent().toString();
+		MessageDigest messageDigest = messageDigests.get();
+		contentDigesters.get().update(content, messageDigest, null);
+		byte[] digest = messageDigest.digest();
+		ByteBuffer key = ByteBuffer.allocate(digest.length + 4);
+		key.put(digest).putInt(content.length());
+		key.flip();
+		return key;
+	}
+
+	private static class DocumentResults {
+
+		private final FeatureMap features;
+		private final Map<String, List<Annotation>> annotations = new HashMap<>();
+		private final Map<String, List<Relation>> relations = new HashMap<>();
+
+		private DocumentResults(Document document) {
+			features = Factory.newFeatureMap();
+			features.putAll(document.getFeatures());
+			capture("", document.getAnnotations());
+			for (String annotationSetName : document.getAnnotationSetNames()) {
+				if (annotationSetName.length() > 0) {
+					capture(annotationSetName, document.getAnnotations(annotationSetName));
+				}
+			}
+		}
+
+		private void capture(String annotationSetName, AnnotationSet annotationSet) {
+			annotations.put(annotationSetName, new ArrayList<>(annotationSet));
+			List<Relation> setRelations = new ArrayList<>();
+			if (!annotationSet.getRelations().isEmpty()) {
+				for (Relation relation : annotationSet.getRelations()) {
+					setRelations.add(relation);
+				}
+			}
+			relations.put(annotationSetName, setRelations);
+		}
+
+		/**
+		 * Annotations and relations, which are already present in the same set of
+		 * the duplicate (e.g. original markups), are skipped. Ids are unique
+		 * across all sets of a document, so others, whose id is used anywhere in
+		 * the duplicate, get new ids.
+		 */
+		private void copyTo(Document document) {
+			Set<Integer> usedIds = new HashSet<>();
+			collectIds(document.getAnnotations(), usedIds);
+			for (String annotationSetName : document.getAnnotationSetNames()) {
+				if (annotationSetName.length() > 0) {
+					collectIds(document.getAnnotations(annotationSetName), usedIds);
+				}
+			}
+			int maxId = -1;
+			for (Integer id : usedIds) {
+				maxId = Math.max(maxId, id);
+			}
+			for (Entry<String, List<Annotation>> entry : annotations.entrySet()) {
+				for (Annotation annotation : entry.getValue()) {
+					maxId = Math.max(maxId, annotation.getId());
+				}
+				for (Relation relation : relations.get(entry.getKey())) {
+					maxId = Math.max(maxId, relation.getId());
+				}
+			}
+			// new ids are drawn from the document behind all copied ids
+			if (document instanceof DocumentImpl && ((DocumentImpl) document).peakAtNextAnnotationId() <= maxId) {
+				((DocumentImpl) document).setNextAnnotationId(maxId + 1);
+			}
+
+			for (Entry<String, List<Annotation>> entry : annotations.entrySet()) {
+				AnnotationSet annotationSet = entry.getKey().isEmpty() ? document.getAnnotations()
+						: document.getAnnotations(entry.getKey());
+				Map<Integer, Integer> annotationMapping = new HashMap<>();
+				for (Annotation annotation : entry.getValue()) {
+					annotationMapping.put(annotation.getId(), copyAnnotation(annotation, annotationSet, usedIds));
+				}
+				for (Relation relation : relations.get(entry.getKey())) {
+					copyRelation(relation, annotationSet.getRelations(), annotationMapping, usedIds);
+				}
+			}
+			document.getFeatures().putAll(features);
+		}
+
+		private static void collectIds(AnnotationSet annotationSet, Set<Integer> ids) {
+			for (Annotation annotation : annotationSet) {
+				ids.add(annotation.getId());
+			}
+			if (!annotationSet.getRelations().isEmpty()) {
+				for (Relation relation : annotationSet.getRelations()) {
+					ids.add(relation.getId());
+				}
+			}
+		}
+
+		/**
+		 * @return the id of the copy or of the already present annotation
+		 */
+		private static Integer copyAnnotation(Annotation annotation, AnnotationSet annotationSet,
+				Set<Integer> usedIds) {
+			Annotation present = annotationSet.get(annotation.getId());
+			if (present != null && present.getType().equals(annotation.getType())
+					&& present.getStartNode().getOffset().equals(annotation.getStartNode().getOffset())
+					&& present.getEndNode().getOffset().equals(annotation.getEndNode().getOffset())) {
+				return present.getId();
+			}
+			FeatureMap annotationFeatures = Factory.newFeatureMap();
+			if (annotation.getFeatures() != null) {
+				annotationFeatures.putAll(annotation.getFeatures());
+			}
+			try {
+				if (usedIds.contains(annotation.getId())) {
+					return annotationSet.add(annotation.getStartNode().getOffset(),
+							annotation.getEndNode().getOffset(), annotation.getType(), annotationFeatures);
+				}
+				annotationSet.add(annotation.getId(), annotation.getStartNode().getOffset(),
+						annotation.getEndNode().getOffset(), annotation.getType(), annotationFeatures);
+				return annotation.getId();
+			} catch (InvalidOffsetException e) {
+				throw new GateRuntimeException(e);
+			}
+		}
+
+		/**
+		 * Relations with members outside of their set are skipped.
+		 */
+		private static void copyRelation(Relation relation, RelationSet relationSet,
+				Map<Integer, Integer> annotationMapping, Set<Integer> usedIds) {
+			int[] members = relation.getMembers().clone();
+			for (int i = 0; i < members.length; i++) {
+				Integer member = annotationMapping.get(members[i]);
+				if (member == null) {
+					return;
+				}
+				members[i] = member;
+			}
+			Relation present = relationSet.get(relation.getId());
+			if (present != null && present.getType().equals(relation.getType())
+					&& Arrays.equals(present.getMembers(), members)) {
+				return;
+			}
+			Relation copy;
+			if (usedIds.contains(relation.getId())) {
+				copy = relationSet.addRelation(relation.getType(), members);
+			} else {
+				copy = new SimpleRelation(relation.getId(), relation.getType(), members);
+				relationSet.add(copy);
+			}
+			if (relation.getFeatures() != null) {
+				FeatureMap relationFeatures = Factory.newFeatureMap();
+				relationFeatures.putAll(relation.getFeatures());
+				copy.setFeatures(relationFeatures);
+			}
+		}
+
+	}
+
+}
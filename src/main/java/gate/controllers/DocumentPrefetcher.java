@@ -0,0 +1,135 @@
+package gate.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Loads documents in corpus order into a bounded buffer, documents for which
+ * the loader returns null are skipped.
+ */
+class DocumentPrefetcher<T> implements Runnable {
+
+	private static final Object END = new Object();
+	private static final long POLL_MILLIS = 100;
+
+	private final int size;
+	private final IntFunction<T> loader;
+	private final Consumer<T> discarder;
+	private final BlockingQueue<Object> buffer;
+
+	private final CountDownLatch finished = new CountDownLatch(1);
+	private volatile boolean closed = false;
+
+	DocumentPrefetcher(int size, int depth, IntFunction<T> loader, Consumer<T> discarder) {
+		this.size = size;
+		this.loader = loader;
+		this.discarder = discarder;
+		this.buffer = new ArrayBlockingQueue<>(Math.max(depth, 1) + 1);
+	}
+
+	@Override
+	public void run() {
+		try {
+			for (int index = 0; index < size && !closed; index++) {
+				Object loaded;
+				try {
+					loaded = loader.apply(index);
+				} catch (RuntimeException e) {
+					loaded = new PrefetchFailure(e);
+				}
+				if (loaded == null) {
+					continue;
+				}
+				if (!offer(loaded)) {
+					discard(loaded);
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				offer(END);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				finished.countDown();
+			}
+		}
+	}
+
+	private boolean offer(Object loaded) throws InterruptedException {
+		while (!closed) {
+			if (buffer.offer(loaded, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T take() {
+		try {
+			while (!closed) {
+				Object loaded = buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (loaded == null) {
+					continue;
+				}
+				if (loaded == END) {
+					buffer.offer(END);
+					return null;
+				}
+				if (loaded instanceof PrefetchFailure) {
+					throw ((PrefetchFailure) loaded).exception;
+				}
+				return (T) loaded;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	public boolean hasBuffered() {
+		Object next = buffer.peek();
+		return next != null && next != END;
+	}
+
+	public void close() {
+		closed = true;
+		try {
+			finished.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<Object> remaining = new ArrayList<>();
+		buffer.drainTo(remaining);
+		for (Object loaded : remaining) {
+			discard(loaded);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void discard(Object loaded) {
+		if (loaded != END && !(loaded instanceof PrefetchFailure)) {
+			discarder.accept((T) loaded);
+		}
+	}
+
+	private static class PrefetchFailure {
+
+		private final RuntimeException exception;
+
+		private PrefetchFailure(RuntimeException exception) {
+			this.exception = exception;
+		}
+
+	}
+
+}
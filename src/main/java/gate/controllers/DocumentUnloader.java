@@ -0,0 +1,107 @@
+package gate.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Unloads finished documents in batches on separate threads.
+ */
+class DocumentUnloader<T> {
+	private static Logger logger = Logger.getLogger(DocumentUnloader.class);
+
+	private static final Object END = new Object();
+	private static final long POLL_MILLIS = 100;
+
+	private final int batchSize;
+	private final Consumer<List<T>> batchUnloader;
+	private final BlockingQueue<Object> queue;
+	private final CountDownLatch finished;
+
+	private volatile boolean closed = false;
+	private volatile RuntimeException exception;
+
+	DocumentUnloader(String name, int threads, int capacity, Consumer<List<T>> batchUnloader) {
+		this.batchSize = Math.max(capacity, 1);
+		this.batchUnloader = batchUnloader;
+		this.queue = new ArrayBlockingQueue<>(batchSize + 1);
+		this.finished = new CountDownLatch(threads);
+		// dedicated threads, since they run for the whole execution and would block
+		// the workers of a bounded executor
+		for (int i = 0; i < threads; i++) {
+			Thread thread = new Thread(this::unloadDocuments, "document-unloader-" + name + "-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * @return false, if the unloader is already closed and the caller needs to
+	 *         unload the document itself
+	 */
+	public boolean add(T document) throws InterruptedException {
+		while (!closed) {
+			if (queue.offer(document, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void close() throws InterruptedException {
+		if (!closed) {
+			closed = true;
+			queue.put(END);
+		}
+		finished.await();
+		RuntimeException exception = this.exception;
+		this.exception = null;
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void unloadDocuments() {
+		try {
+			boolean end = false;
+			while (!end) {
+				List<Object> queued = new ArrayList<>();
+				queued.add(queue.take());
+				queue.drainTo(queued, batchSize - 1);
+
+				List<T> batch = new ArrayList<>(queued.size());
+				for (Object document : queued) {
+					if (document == END) {
+						end = true;
+					} else {
+						batch.add((T) document);
+					}
+				}
+				if (!batch.isEmpty()) {
+					try {
+						batchUnloader.accept(batch);
+					} catch (RuntimeException e) {
+						logger.error("exception occured while unloading", e);
+						if (exception == null) {
+							exception = e;
+						}
+					}
+				}
+			}
+			// let the other writer threads see the end as well
+			queue.put(END);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			finished.countDown();
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+package gate.controllers;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import gate.FeatureMap;
+import gate.ProcessingResource;
+
+/**
+ * Timings and counters of one controller execution, published as controller
+ * features with the prefix {@value #FEATURE_PREFIX}.
+ */
+public class ExecutionMetrics {
+
+	public static final String FEATURE_PREFIX = "metrics.";
+
+	private final LongAdder documents = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder loadCount = new LongAdder();
+	private final LongAdder loadNanos = new LongAdder();
+	private final LongAdder unloadCount = new LongAdder();
+	private final LongAdder unloadNanos = new LongAdder();
+	private final LongAdder queueWaitNanos = new LongAdder();
+	private final LongAdder prefetchWaitNanos = new LongAdder();
+	private final LongAdder pipelineWaitNanos = new LongAdder();
+	private final LongAdder[] processingResourceCounts;
+	private final LongAdder[] processingResourceNanos;
+	private final LongAdder[] processingResourceSkips;
+
+	public ExecutionMetrics(int processingResources) {
+		processingResourceCounts = newAdders(processingResources);
+		processingResourceNanos = newAdders(processingResources);
+		processingResourceSkips = newAdders(processingResources);
+	}
+
+	private static LongAdder[] newAdders(int size) {
+		LongAdder[] adders = new LongAdder[size];
+		for (int i = 0; i < size; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	public void documentProcessed() {
+		documents.increment();
+	}
+
+	public void documentDeduplicated() {
+		duplicates.increment();
+	}
+
+	public void documentLoaded(long nanos) {
+		loadCount.increment();
+		loadNanos.add(nanos);
+	}
+
+	public void documentsUnloaded(int count, long nanos) {
+		unloadCount.add(count);
+		unloadNanos.add(nanos);
+	}
+
+	public void waitedForQueue(long nanos) {
+		queueWaitNanos.add(nanos);
+	}
+
+	public void waitedForPrefetch(long nanos) {
+		prefetchWaitNanos.add(nanos);
+	}
+
+	public void waitedForPipeline(long nanos) {
+		pipelineWaitNanos.add(nanos);
+	}
+
+	public void processingResourceExecuted(int processingResourceIndex, long nanos) {
+		if (processingResourceIndex < processingResourceCounts.length) {
+			processingResourceCounts[processingResourceIndex].increment();
+			processingResourceNanos[processingResourceIndex].add(nanos);
+		}
+	}
+
+	public void processingResourceSkipped(int processingResourceIndex) {
+		if (processingResourceIndex < processingResourceSkips.length) {
+			processingResourceSkips[processingResourceIndex].increment();
+		}
+	}
+
+	public long getDocuments() {
+		return documents.sum();
+	}
+
+	public long getDuplicates() {
+		return duplicates.sum();
+	}
+
+	public long getLoadCount() {
+		return loadCount.sum();
+	}
+
+	public long getLoadMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(loadNanos.sum());
+	}
+
+	public long getUnloadCount() {
+		return unloadCount.sum();
+	}
+
+	public long getUnloadMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(unloadNanos.sum());
+	}
+
+	public long getQueueWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.sum());
+	}
+
+	public long getPrefetchWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(prefetchWaitNanos.sum());
+	}
+
+	public long getPipelineWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(pipelineWaitNanos.sum());
+	}
+
+	public long getProcessingResourceCount(int processingResourceIndex) {
+		return processingResourceCounts[processingResourceIndex].sum();
+	}
+
+	public long getProcessingResourceMillis(int processingResourceIndex) {
+		return TimeUnit.NANOSECONDS.toMillis(processingResourceNanos[processingResourceIndex].sum());
+	}
+
+	public long getProcessingResourceSkips(int processingResourceIndex) {
+		return processingResourceSkips[processingResourceIndex].sum();
+	}
+
+	public void publish(FeatureMap features, List<ProcessingResource> processingResources) {
+		Iterator<Object> iterator = features.keySet().iterator();
+		while (iterator.hasNext()) {
+			Object key = iterator.next();
+			if (key instanceof String && ((String) key).startsWith(FEATURE_PREFIX)) {
+				iterator.remove();
+			}
+		}
+		features.put(FEATURE_PREFIX + "documents", getDocuments());
+		features.put(FEATURE_PREFIX + "duplicates", getDuplicates());
+		features.put(FEATURE_PREFIX + "loadCount", getLoadCount());
+		features.put(FEATURE_PREFIX + "loadMillis", getLoadMillis());
+		features.put(FEATURE_PREFIX + "unloadCount", getUnloadCount());
+		features.put(FEATURE_PREFIX + "unloadMillis", getUnloadMillis());
+		features.put(FEATURE_PREFIX + "queueWaitMillis", getQueueWaitMillis());
+		features.put(FEATURE_PREFIX + "prefetchWaitMillis", getPrefetchWaitMillis());
+		features.put(FEATURE_PREFIX + "pipelineWaitMillis", getPipelineWaitMillis());
+		for (int i = 0; i < processingResourceCounts.length && i < processingResources.size(); i++) {
+			String prefix = FEATURE_PREFIX + "pr." + i + ".";
+			features.put(prefix + "name", processingResources.get(i).getName());
+			features.put(prefix + "count", getProcessingResourceCount(i));
+			features.put(prefix + "millis", getProcessingResourceMillis(i));
+			features.put(prefix + "skips", getProcessingResourceSkips(i));
+		}
+	}
+
+}
@@ -8,7 +8,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
-public class ExecutorQueue {
+public class ExecutorQueue implements TaskQueue {
 	private ExecutorService executor;
 	private int maxParallelTasks;
 
@@ -22,6 +22,7 @@ public class ExecutorQueue {
 		this.maxParallelTasks = maxSubmittedTasks;
 	}
 
+	@Override
 	public synchronized void submit(Iterator<Runnable> tasks) {
 		interrupted = false;
 		tasksQueue.add(tasks);
@@ -29,16 +30,19 @@ public class ExecutorQueue {
 		executeNext();
 	}
 
+	@Override
 	public synchronized void interrupt() {
 		interrupted = true;
 		tasksQueue.clear();
 		notify();
 	}
 
+	@Override
 	public boolean isInterrupted() {
 		return interrupted;
 	}
 
+	@Override
 	public boolean hasCompleted() {
 		return tasksQueue.isEmpty() && submittedTasks == 0 && futures.isEmpty();
 	}
@@ -84,6 +88,7 @@ public class ExecutorQueue {
 		executeNext();
 	}
 
+	@Override
 	public void awaitCompleted() throws InterruptedException, ExecutionException {
 		while ((!interrupted && !hasCompleted()) || (interrupted && !futures.isEmpty())) {
 			if (!interrupted && (executor.isShutdown() || executor.isTerminated())) {
@@ -123,7 +128,7 @@ public class ExecutorQueue {
 
 	}
 
-	private static class FailedFuture<V> implements Future<V> {
+	static class FailedFuture<V> implements Future<V> {
 
 		private boolean canceled = false;
 		private Exception exception;
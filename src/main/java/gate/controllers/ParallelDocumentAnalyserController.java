@@ -3,10 +3,13 @@ package gate.controllers;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
@@ -47,6 +50,16 @@ public class ParallelDocumentAnalyserController extends AbstractController
 	private Boolean failOnException;
 	private Boolean synchronizeCorpus;
 	private Boolean orderedDocumentLoading;
+	private Boolean stripedCorpusLocks;
+	private Boolean concurrentQueue;
+	private Boolean pinnedPipelines;
+	private Boolean keepDuplicatedPipelines;
+	private Boolean elasticDuplication;
+	private Integer prefetchDepth;
+	private Integer unloadThreads;
+	private Boolean collectMetrics;
+	private Boolean deduplicateDocuments;
+	private Integer deduplicationResults;
 
 	private ExecutorService executor;
 	private boolean shutdownExecutor = false;
@@ -54,11 +67,25 @@ public class ParallelDocumentAnalyserController extends AbstractController
 	protected List<ProcessingResource> processingResources;
 	protected Corpus corpus;
 	protected Document document;
+	protected CorpusAccess corpusAccess;
+	protected ExecutionMetrics metrics;
 
-	private ExecutorQueue queue;
+	private TaskQueue queue;
 	private Collection<ProcessingResource> parallelProcessingResources;
 	private Boolean parallelExecution = null;
 
+	private DocumentPrefetcher<LoadedDocument> prefetcher;
+	private DocumentUnloader<LoadedDocument> unloader;
+	private DocumentDeduplicator<LoadedDocument> deduplicator;
+	private int pipelinesCount;
+	private int pendingDuplications;
+	private int waitingTasks;
+	private boolean duplicationFailed;
+	private final AtomicBoolean pinnedWorkerRequested = new AtomicBoolean();
+
+	private Collection<List<ProcessingResource>> duplicatedPipelines;
+	private List<Map<String, Object>> duplicatedPipelinesParameters;
+
 	public ParallelDocumentAnalyserController() {
 		processingResources = Collections.synchronizedList(new ArrayList<ProcessingResource>());
 		Gate.getCreoleRegister().addCreoleListener(this);
@@ -79,14 +106,41 @@ public class ParallelDocumentAnalyserController extends AbstractController
 		if (corpus == null) {
 			throw new ExecutionException("corpus is null");
 		}
-		if (document == null && parallelTasks > 1) {
-			parallelExecution = true;
-			executeParallel();
+		corpusAccess = CorpusAccess.getInstance(corpus, stripedCorpusLocks != null && stripedCorpusLocks);
+		if (collectMetrics != null && collectMetrics) {
+			metrics = new ExecutionMetrics(processingResources.size());
+		} else {
+			metrics = null;
+		}
+		if (document == null && deduplicateDocuments != null && deduplicateDocuments) {
+			deduplicator = new DocumentDeduplicator<>(deduplicationResults != null ? deduplicationResults : 0,
+					(loadedDocument) -> loadedDocument.document, (loadedDocument) -> loadedDocument.index,
+					this::loadDocument, this::releaseDocument, metrics);
 		} else {
-			parallelExecution = false;
-			executeNoneParallel();
+			deduplicator = null;
 		}
-		parallelExecution = null;
+		try {
+			if (document == null && parallelTasks > 1) {
+				parallelExecution = true;
+				executeParallel();
+			} else {
+				parallelExecution = false;
+				executeNoneParallel();
+			}
+		} finally {
+			parallelExecution = null;
+			if (deduplicator != null) {
+				deduplicator.close();
+				deduplicator = null;
+			}
+			if (metrics != null) {
+				metrics.publish(getFeatures(), processingResources);
+			}
+		}
+	}
+
+	public ExecutionMetrics getMetrics() {
+		return metrics;
 	}
 
 	protected boolean isParallelExecution() {
@@ -103,21 +157,14 @@ public class ParallelDocumentAnalyserController extends AbstractController
 				if (isInterrupted()) {
 					throw new ExecutionInterruptedException();
 				}
-				boolean unloadDocument;
-				Document document;
-				if (synchronizeCorpus) {
-					synchronized (corpus) {
-						unloadDocument = !corpus.isDocumentLoaded(documentIndex);
-						document = corpus.get(documentIndex);
-					}
-				} else {
-					unloadDocument = !corpus.isDocumentLoaded(documentIndex);
-					document = corpus.get(documentIndex);
+				LoadedDocument loadedDocument = loadDocument(documentIndex);
+				if (!isDistinct(loadedDocument)) {
+					continue;
 				}
 
 				boolean exceptionOccured = false;
 				try {
-					executeProcessingResources(processingResources, documentIndex, document);
+					executeProcessingResources(processingResources, documentIndex, loadedDocument.document);
 				} catch (ExecutionException e) {
 					exceptionOccured = true;
 					if (failOnException) {
@@ -127,14 +174,9 @@ public class ParallelDocumentAnalyserController extends AbstractController
 						e.printStackTrace(Err.getPrintWriter());
 					}
 				} finally {
-					if (!(failOnException && exceptionOccured) && unloadDocument) {
-						if (synchronizeCorpus) {
-							synchronized (corpus) {
-								Factory.deleteResource(document);
-							}
-						} else {
-							Factory.deleteResource(document);
-						}
+					processed(loadedDocument, exceptionOccured);
+					if (!(failOnException && exceptionOccured)) {
+						unloadDocument(loadedDocument);
 					}
 				}
 			}
@@ -153,113 +195,136 @@ public class ParallelDocumentAnalyserController extends AbstractController
 	}
 
 	protected void executeParallel() throws ExecutionException {
-		queue = new ExecutorQueue(executor, parallelTasks);
+		if (concurrentQueue != null && concurrentQueue) {
+			queue = new ConcurrentExecutorQueue(executor, parallelTasks);
+		} else {
+			queue = new ExecutorQueue(executor, parallelTasks);
+		}
 
 		Collection<List<ProcessingResource>> parallelProcessingResources;
 		try {
 			parallelProcessingResources = buildParallelProcessingResources();
-			this.parallelProcessingResources = new ArrayList<>();
+			this.parallelProcessingResources = Collections.synchronizedList(new ArrayList<>());
 			for (List<ProcessingResource> processingResources : parallelProcessingResources) {
 				this.parallelProcessingResources.addAll(processingResources);
 			}
+			pipelinesCount = parallelProcessingResources.size();
+			pendingDuplications = 0;
+			waitingTasks = 0;
+			duplicationFailed = false;
+			pinnedWorkerRequested.set(false);
 		} catch (ResourceInstantiationException e) {
 			throw new ExecutionException(e);
 		}
 
 		AtomicInteger documentIndexHolder = new AtomicInteger(0);
 
-		queue.submit(new Iterator<Runnable>() {
+		if (prefetchDepth != null && prefetchDepth > 0) {
+			prefetcher = new DocumentPrefetcher<>(corpus.size(), prefetchDepth,
+					deduplicator != null ? this::loadDistinctDocument : this::loadDocument, this::unloadDocument);
+			// a dedicated thread, since it runs for the whole execution and would
+			// block a worker of a bounded executor
+			Thread prefetcherThread = new Thread(prefetcher, "document-prefetcher-" + getName());
+			prefetcherThread.setDaemon(true);
+			prefetcherThread.start();
+		} else {
+			prefetcher = null;
+		}
+		if (unloadThreads != null && unloadThreads > 0) {
+			unloader = new DocumentUnloader<>(getName(), unloadThreads, parallelTasks * 2, this::unloadDocuments);
+		} else {
+			unloader = null;
+		}
 
-			@Override
-			public boolean hasNext() {
-				return documentIndexHolder.get() < corpus.size();
+		if (pinnedPipelines != null && pinnedPipelines) {
+			List<Runnable> pinnedTasks = new ArrayList<>();
+			for (List<ProcessingResource> processingResources : parallelProcessingResources) {
+				pinnedTasks.add(new PinnedPipelineTask(parallelProcessingResources, processingResources,
+						documentIndexHolder));
 			}
+			queue.submit(pinnedTasks.iterator());
+		} else {
+			queue.submit(new Iterator<Runnable>() {
 
-			@Override
-			public Runnable next() {
-				int documentIndex = documentIndexHolder.getAndAdd(1);
-
-				Boolean unloadDocumentUpfront;
-				Document documentUpfront;
-				if (orderedDocumentLoading) {
-					if (synchronizeCorpus) {
-						synchronized (corpus) {
-							unloadDocumentUpfront = !corpus.isDocumentLoaded(documentIndex);
-							documentUpfront = corpus.get(documentIndex);
-						}
+				@Override
+				public boolean hasNext() {
+					return documentIndexHolder.get() < corpus.size();
+				}
+
+				@Override
+				public Runnable next() {
+					int documentIndex = documentIndexHolder.getAndAdd(1);
+					long submitted = metrics != null ? System.nanoTime() : 0;
+
+					LoadedDocument loadedDocumentUpfront;
+					if (prefetcher != null) {
+						loadedDocumentUpfront = null;
+					} else if (orderedDocumentLoading) {
+						loadedDocumentUpfront = loadDocument(documentIndex);
 					} else {
-						unloadDocumentUpfront = !corpus.isDocumentLoaded(documentIndex);
-						documentUpfront = corpus.get(documentIndex);
+						loadedDocumentUpfront = null;
 					}
-				} else {
-					unloadDocumentUpfront = null;
-					documentUpfront = null;
-				}
 
-				return new Runnable() {
+					return new Runnable() {
 
-					@Override
-					public void run() {
-						boolean unloadDocument;
-						Document document;
-						if (orderedDocumentLoading) {
-							unloadDocument = unloadDocumentUpfront;
-							document = documentUpfront;
-						} else {
-							if (synchronizeCorpus) {
-								synchronized (corpus) {
-									unloadDocument = !corpus.isDocumentLoaded(documentIndex);
-									document = corpus.get(documentIndex);
+						@Override
+						public void run() {
+							if (metrics != null) {
+								metrics.waitedForQueue(System.nanoTime() - submitted);
+							}
+							LoadedDocument loadedDocument;
+							if (prefetcher != null) {
+								loadedDocument = takePrefetched();
+								if (loadedDocument == null) {
+									return;
 								}
+							} else if (orderedDocumentLoading) {
+								loadedDocument = loadedDocumentUpfront;
 							} else {
-								unloadDocument = !corpus.isDocumentLoaded(documentIndex);
-								document = corpus.get(documentIndex);
+								loadedDocument = loadDocument(documentIndex);
+							}
+							if (prefetcher == null && !isDistinct(loadedDocument)) {
+								return;
 							}
-						}
 
-						boolean exceptionOccured = false;
-						try {
-							executeDocumentParallel(parallelProcessingResources, documentIndex, document);
-						} catch (Exception e) {
-							exceptionOccured = true;
-							throw e;
-						} finally {
-							if (!(failOnException && exceptionOccured) && unloadDocument) {
-								if (synchronizeCorpus) {
-									synchronized (corpus) {
-										Factory.deleteResource(document);
-									}
-								} else {
-									Factory.deleteResource(document);
+							boolean exceptionOccured = false;
+							try {
+								executeDocumentParallel(parallelProcessingResources, loadedDocument);
+							} catch (Exception e) {
+								exceptionOccured = true;
+								throw e;
+							} finally {
+								processed(loadedDocument, exceptionOccured);
+								if (!(failOnException && exceptionOccured)) {
+									releaseDocument(loadedDocument);
 								}
 							}
 						}
-					}
 
-					private void executeDocumentParallel(
-							Collection<List<ProcessingResource>> parallelProcessingResources, Integer documentIndex,
-							Document document) {
-						List<ProcessingResource> processingResources;
-						synchronized (parallelProcessingResources) {
-							Iterator<List<ProcessingResource>> iterator = parallelProcessingResources.iterator();
-							processingResources = iterator.next();
-							iterator.remove();
-						}
-						try {
-							executeProcessingResources(processingResources, documentIndex, document);
-						} catch (ExecutionException e) {
-							throw new RuntimeException(e);
-						} finally {
-							synchronized (parallelProcessingResources) {
-								parallelProcessingResources.add(processingResources);
+						private void executeDocumentParallel(
+								Collection<List<ProcessingResource>> parallelProcessingResources,
+								LoadedDocument loadedDocument) {
+							List<ProcessingResource> processingResources = borrowPipeline(
+									parallelProcessingResources);
+							try {
+								executeProcessingResources(processingResources, loadedDocument.index,
+										loadedDocument.document);
+							} catch (ExecutionException e) {
+								throw new RuntimeException(e);
+							} finally {
+								synchronized (parallelProcessingResources) {
+									parallelProcessingResources.add(processingResources);
+									parallelProcessingResources.notify();
+								}
 							}
 						}
-					}
-				};
-			}
+					};
+				}
 
-		});
+			});
+		}
 
+		boolean completed = false;
 		try {
 			while (!queue.hasCompleted()) {
 				try {
@@ -286,25 +351,382 @@ public class ParallelDocumentAnalyserController extends AbstractController
 					throw new ExecutionInterruptedException();
 				}
 			}
+			completed = true;
 		} finally {
+			if (prefetcher != null) {
+				prefetcher.close();
+			}
+			Exception unloadException = null;
+			if (unloader != null) {
+				try {
+					unloader.close();
+				} catch (RuntimeException | InterruptedException e) {
+					unloadException = e;
+				}
+			}
 			synchronized (parallelProcessingResources) {
-				cleanupDuplicatedResources(parallelProcessingResources);
+				while (pendingDuplications > 0) {
+					try {
+						parallelProcessingResources.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				releaseParallelProcessingResources(parallelProcessingResources);
+			}
+			if (unloadException != null) {
+				if (completed && failOnException) {
+					throw new ExecutionException(unloadException);
+				}
+				logger.error("exception occured while unloading", unloadException);
+				unloadException.printStackTrace(Err.getPrintWriter());
+			}
+		}
+	}
+
+	private boolean isElasticDuplication() {
+		return elasticDuplication != null && elasticDuplication;
+	}
+
+	private LoadedDocument takePrefetched() {
+		if (metrics == null) {
+			return prefetcher.take();
+		}
+		long start = System.nanoTime();
+		LoadedDocument loadedDocument = prefetcher.take();
+		metrics.waitedForPrefetch(System.nanoTime() - start);
+		return loadedDocument;
+	}
+
+	private List<ProcessingResource> borrowPipeline(Collection<List<ProcessingResource>> parallelProcessingResources) {
+		long start = metrics != null ? System.nanoTime() : 0;
+		try {
+			return takePipeline(parallelProcessingResources);
+		} finally {
+			if (metrics != null) {
+				metrics.waitedForPipeline(System.nanoTime() - start);
+			}
+		}
+	}
+
+	private List<ProcessingResource> takePipeline(Collection<List<ProcessingResource>> parallelProcessingResources) {
+		boolean duplicate = false;
+		synchronized (parallelProcessingResources) {
+			if (isElasticDuplication()) {
+				waitingTasks++;
+				try {
+					while (parallelProcessingResources.isEmpty()) {
+						if (!duplicationFailed && pendingDuplications < waitingTasks
+								&& pipelinesCount + pendingDuplications < parallelTasks) {
+							pendingDuplications++;
+							duplicate = true;
+							break;
+						}
+						parallelProcessingResources.wait();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new GateRuntimeException(e);
+				} finally {
+					waitingTasks--;
+				}
+			}
+			if (!duplicate) {
+				Iterator<List<ProcessingResource>> iterator = parallelProcessingResources.iterator();
+				List<ProcessingResource> processingResources = iterator.next();
+				iterator.remove();
+				return processingResources;
+			}
+		}
+		// the waiting task duplicates on its own thread, so no task beyond the queue
+		// bound is started
+		List<ProcessingResource> duplicatedResources = duplicateElastic(parallelProcessingResources);
+		if (duplicatedResources != null) {
+			return duplicatedResources;
+		}
+		return takePipeline(parallelProcessingResources);
+	}
+
+	/**
+	 * @return the duplicated pipeline (not added to the free pipelines) or null,
+	 *         if duplication failed
+	 */
+	private List<ProcessingResource> duplicateElastic(
+			Collection<List<ProcessingResource>> parallelProcessingResources) {
+		List<ProcessingResource> duplicatedResources = null;
+		try {
+			duplicatedResources = duplicatePipeline();
+		} catch (Exception e) {
+			logger.error("failed to duplicate pipeline, continue with " + pipelinesCount + " pipelines", e);
+		}
+		if (duplicatedResources != null) {
+			pipelineDuplicated(duplicatedResources);
+		}
+		synchronized (parallelProcessingResources) {
+			pendingDuplications--;
+			if (duplicatedResources != null) {
+				pipelinesCount++;
+			} else {
+				duplicationFailed = true;
+			}
+			parallelProcessingResources.notifyAll();
+		}
+		return duplicatedResources;
+	}
+
+	/**
+	 * Submits one more pinned worker (duplicating its pipeline on start), if
+	 * documents are waiting and no other worker was requested meanwhile.
+	 */
+	private void requestPinnedWorker(Collection<List<ProcessingResource>> parallelProcessingResources,
+			AtomicInteger documentIndexHolder) {
+		if (!isElasticDuplication()) {
+			return;
+		}
+		boolean waiting = prefetcher != null ? prefetcher.hasBuffered()
+				: documentIndexHolder.get() < corpus.size();
+		if (!waiting) {
+			return;
+		}
+		synchronized (parallelProcessingResources) {
+			if (duplicationFailed || pipelinesCount >= parallelTasks) {
+				return;
+			}
+		}
+		if (pinnedWorkerRequested.compareAndSet(false, true)) {
+			queue.submit(Collections.singletonList(
+					(Runnable) new PinnedPipelineTask(parallelProcessingResources, null, documentIndexHolder))
+					.iterator());
+		}
+	}
+
+	private LoadedDocument loadDocument(int documentIndex) {
+		long start = metrics != null ? System.nanoTime() : 0;
+		LoadedDocument loadedDocument;
+		if (synchronizeCorpus) {
+			loadedDocument = corpusAccess.access(documentIndex, () -> new LoadedDocument(documentIndex,
+					!corpus.isDocumentLoaded(documentIndex), corpus.get(documentIndex)));
+		} else {
+			loadedDocument = new LoadedDocument(documentIndex, !corpus.isDocumentLoaded(documentIndex),
+					corpus.get(documentIndex));
+		}
+		if (metrics != null) {
+			metrics.documentLoaded(System.nanoTime() - start);
+		}
+		return loadedDocument;
+	}
+
+	private LoadedDocument loadDistinctDocument(int documentIndex) {
+		LoadedDocument loadedDocument = loadDocument(documentIndex);
+		return isDistinct(loadedDocument) ? loadedDocument : null;
+	}
+
+	/**
+	 * @return false, if the document is a duplicate of an already registered
+	 *         document and was released by the deduplicator (which loads it
+	 *         again to copy the results)
+	 */
+	private boolean isDistinct(LoadedDocument loadedDocument) {
+		return deduplicator == null || deduplicator.register(loadedDocument);
+	}
+
+	private void processed(LoadedDocument loadedDocument, boolean exceptionOccured) {
+		if (deduplicator != null) {
+			// executeProcessingResources returns without exception when interrupted,
+			// so the results may be partial
+			if (exceptionOccured || isInterrupted()) {
+				deduplicator.failed(loadedDocument);
+			} else {
+				deduplicator.completed(loadedDocument);
+			}
+		}
+	}
+
+	private void unloadDocument(LoadedDocument loadedDocument) {
+		if (loadedDocument.unload) {
+			long start = metrics != null ? System.nanoTime() : 0;
+			if (synchronizeCorpus) {
+				corpusAccess.unload(loadedDocument.index, loadedDocument.document);
+			} else {
+				Factory.deleteResource(loadedDocument.document);
+			}
+			if (metrics != null) {
+				metrics.documentsUnloaded(1, System.nanoTime() - start);
+			}
+		}
+	}
+
+	private void releaseDocument(LoadedDocument loadedDocument) {
+		if (loadedDocument.unload && unloader != null) {
+			try {
+				if (unloader.add(loadedDocument)) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		unloadDocument(loadedDocument);
+	}
+
+	/**
+	 * Unloads all documents of the batch, also after a failed one, and throws the
+	 * first exception afterwards.
+	 */
+	private void unloadDocuments(List<LoadedDocument> loadedDocuments) {
+		long start = metrics != null ? System.nanoTime() : 0;
+		RuntimeException exception;
+		if (synchronizeCorpus && !corpusAccess.isStriped()) {
+			synchronized (corpus) {
+				exception = unloadEach(loadedDocuments);
+			}
+		} else {
+			exception = unloadEach(loadedDocuments);
+		}
+		if (metrics != null) {
+			metrics.documentsUnloaded(loadedDocuments.size(), System.nanoTime() - start);
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	private RuntimeException unloadEach(List<LoadedDocument> loadedDocuments) {
+		RuntimeException exception = null;
+		for (LoadedDocument loadedDocument : loadedDocuments) {
+			try {
+				if (synchronizeCorpus && corpusAccess.isStriped()) {
+					corpusAccess.unload(loadedDocument.index, loadedDocument.document);
+				} else {
+					Factory.deleteResource(loadedDocument.document);
+				}
+			} catch (RuntimeException e) {
+				logger.error("exception occured while unloading " + loadedDocument.document.getName(), e);
+				if (exception == null) {
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+		return exception;
+	}
+
+	private static class LoadedDocument {
+
+		private final int index;
+		private final boolean unload;
+		private final Document document;
+
+		private LoadedDocument(int index, boolean unload, Document document) {
+			this.index = index;
+			this.unload = unload;
+			this.document = document;
+		}
+
+	}
+
+	/**
+	 * Worker owning one pipeline for the whole run, which pulls the next document
+	 * index from the shared counter instead of borrowing a pipeline per document.
+	 */
+	private class PinnedPipelineTask implements Runnable {
+
+		private final Collection<List<ProcessingResource>> parallelProcessingResources;
+		private List<ProcessingResource> processingResources;
+		private final AtomicInteger documentIndexHolder;
+
+		private PinnedPipelineTask(Collection<List<ProcessingResource>> parallelProcessingResources,
+				List<ProcessingResource> processingResources, AtomicInteger documentIndexHolder) {
+			this.parallelProcessingResources = parallelProcessingResources;
+			this.processingResources = processingResources;
+			this.documentIndexHolder = documentIndexHolder;
+		}
+
+		@Override
+		public void run() {
+			if (processingResources == null) {
+				try {
+					if (documentIndexHolder.get() >= corpus.size()) {
+						return;
+					}
+					synchronized (parallelProcessingResources) {
+						pendingDuplications++;
+					}
+					processingResources = duplicateElastic(parallelProcessingResources);
+					if (processingResources == null) {
+						return;
+					}
+					synchronized (parallelProcessingResources) {
+						parallelProcessingResources.add(processingResources);
+					}
+				} finally {
+					pinnedWorkerRequested.set(false);
+				}
+			}
+			while (!isInterrupted() && !queue.isInterrupted()) {
+				LoadedDocument loadedDocument;
+				if (prefetcher != null) {
+					loadedDocument = documentIndexHolder.getAndIncrement() < corpus.size() ? takePrefetched() : null;
+				} else if (orderedDocumentLoading) {
+					synchronized (documentIndexHolder) {
+						loadedDocument = nextDocument();
+					}
+				} else {
+					loadedDocument = nextDocument();
+				}
+				if (loadedDocument == null) {
+					return;
+				}
+				if (prefetcher == null && !isDistinct(loadedDocument)) {
+					continue;
+				}
+				requestPinnedWorker(parallelProcessingResources, documentIndexHolder);
+
+				boolean exceptionOccured = false;
+				try {
+					executeProcessingResources(processingResources, loadedDocument.index, loadedDocument.document);
+				} catch (ExecutionException e) {
+					exceptionOccured = true;
+					if (failOnException) {
+						throw new RuntimeException(e);
+					} else {
+						logger.error("exception occured while processing", e);
+						e.printStackTrace(Err.getPrintWriter());
+					}
+				} finally {
+					processed(loadedDocument, exceptionOccured);
+					if (!(failOnException && exceptionOccured)) {
+						releaseDocument(loadedDocument);
+					}
+				}
+			}
+		}
+
+		private LoadedDocument nextDocument() {
+			int documentIndex = documentIndexHolder.getAndIncrement();
+			if (documentIndex >= corpus.size()) {
+				return null;
 			}
+			return loadDocument(documentIndex);
 		}
+
 	}
 
 	protected Collection<List<ProcessingResource>> buildParallelProcessingResources()
 			throws ResourceInstantiationException {
 		Collection<List<ProcessingResource>> parallelProcessingResources = new ArrayList<>();
 		parallelProcessingResources.add(processingResources);
+		reuseDuplicatedPipelines(parallelProcessingResources);
 
 		queue.submit(new Iterator<Runnable>() {
 
-			private int i = 1;
+			private int i = parallelProcessingResources.size();
 
 			@Override
 			public boolean hasNext() {
-				return i < parallelTasks;
+				return !isElasticDuplication() && i < parallelTasks;
 			}
 
 			@Override
@@ -314,15 +736,11 @@ public class ParallelDocumentAnalyserController extends AbstractController
 
 					@Override
 					public void run() {
-						List<ProcessingResource> duplicatedResources = new ArrayList<ProcessingResource>();
-						for (ProcessingResource processingResource : processingResources) {
-							synchronized (processingResource) {
-								try {
-									duplicatedResources.add((ProcessingResource) Factory.duplicate(processingResource));
-								} catch (ResourceInstantiationException e) {
-									throw new RuntimeException(e);
-								}
-							}
+						List<ProcessingResource> duplicatedResources;
+						try {
+							duplicatedResources = duplicatePipeline();
+						} catch (ResourceInstantiationException e) {
+							throw new RuntimeException(e);
 						}
 						synchronized (parallelProcessingResources) {
 							parallelProcessingResources.add(duplicatedResources);
@@ -340,6 +758,85 @@ public class ParallelDocumentAnalyserController extends AbstractController
 		return parallelProcessingResources;
 	}
 
+	protected List<ProcessingResource> duplicatePipeline() throws ResourceInstantiationException {
+		List<ProcessingResource> duplicatedResources = new ArrayList<ProcessingResource>();
+		for (ProcessingResource processingResource : processingResources) {
+			synchronized (processingResource) {
+				duplicatedResources.add((ProcessingResource) Factory.duplicate(processingResource));
+			}
+		}
+		return duplicatedResources;
+	}
+
+	protected void pipelineDuplicated(List<ProcessingResource> duplicatedResources) {
+		parallelProcessingResources.addAll(duplicatedResources);
+	}
+
+	private void reuseDuplicatedPipelines(Collection<List<ProcessingResource>> parallelProcessingResources) {
+		if (duplicatedPipelines == null) {
+			return;
+		}
+		if (keepDuplicatedPipelines == null || !keepDuplicatedPipelines
+				|| !buildParameterValues().equals(duplicatedPipelinesParameters)) {
+			invalidateDuplicatedPipelines();
+			return;
+		}
+		Iterator<List<ProcessingResource>> iterator = duplicatedPipelines.iterator();
+		while (iterator.hasNext() && parallelProcessingResources.size() < parallelTasks) {
+			parallelProcessingResources.add(iterator.next());
+			iterator.remove();
+		}
+		invalidateDuplicatedPipelines();
+	}
+
+	private void releaseParallelProcessingResources(
+			Collection<List<ProcessingResource>> parallelProcessingResources) {
+		if (keepDuplicatedPipelines != null && keepDuplicatedPipelines) {
+			duplicatedPipelines = new ArrayList<>();
+			for (List<ProcessingResource> processingResources : parallelProcessingResources) {
+				if (processingResources != this.processingResources) {
+					duplicatedPipelines.add(processingResources);
+				}
+			}
+			duplicatedPipelinesParameters = buildParameterValues();
+		} else {
+			cleanupDuplicatedResources(parallelProcessingResources);
+		}
+	}
+
+	protected void invalidateDuplicatedPipelines() {
+		if (duplicatedPipelines != null) {
+			cleanupDuplicatedResources(duplicatedPipelines);
+			duplicatedPipelines = null;
+			duplicatedPipelinesParameters = null;
+		}
+	}
+
+	private List<Map<String, Object>> buildParameterValues() {
+		List<Map<String, Object>> parameterValues = new ArrayList<>();
+		for (ProcessingResource processingResource : processingResources) {
+			Map<String, Object> values = new HashMap<>();
+			ResourceData resourceData = Gate.getCreoleRegister().get(processingResource.getClass().getName());
+			if (resourceData != null) {
+				List<List<Parameter>> parameterLists = new ArrayList<>();
+				parameterLists.addAll(resourceData.getParameterList().getInitimeParameters());
+				parameterLists.addAll(resourceData.getParameterList().getRuntimeParameters());
+				for (List<Parameter> parameters : parameterLists) {
+					for (Parameter parameter : parameters) {
+						String parameterName = parameter.getName();
+						try {
+							values.put(parameterName, processingResource.getParameterValue(parameterName));
+						} catch (ResourceInstantiationException e) {
+							throw new GateRuntimeException(e);
+						}
+					}
+				}
+			}
+			parameterValues.add(values);
+		}
+		return parameterValues;
+	}
+
 	protected void cleanupDuplicatedResources(Collection<List<ProcessingResource>> parallelProcessingResources) {
 		for (List<ProcessingResource> processingResources : parallelProcessingResources) {
 			if (processingResources != this.processingResources) {
@@ -352,22 +849,41 @@ public class ParallelDocumentAnalyserController extends AbstractController
 
 	protected void executeProcessingResources(List<ProcessingResource> processingResources, Integer documentIndex,
 			Document document) throws ExecutionException {
-		for (int processingResourceIndex = 0; processingResourceIndex < processingResources
-				.size(); processingResourceIndex++) {
-			if (isInterrupted()) {
-				return;
+		try {
+			for (int processingResourceIndex = 0; processingResourceIndex < processingResources
+					.size(); processingResourceIndex++) {
+				if (isInterrupted()) {
+					return;
+				}
+				ProcessingResource processingResource = processingResources.get(processingResourceIndex);
+				if (processingResource instanceof LanguageAnalyser) {
+					LanguageAnalyser languageAnalyser = (LanguageAnalyser) processingResource;
+					languageAnalyser.setCorpus(corpus);
+					languageAnalyser.setDocument(document);
+				}
+				runComponent(documentIndex, processingResourceIndex, processingResource);
+				if (processingResource instanceof LanguageAnalyser) {
+					LanguageAnalyser languageAnalyser = (LanguageAnalyser) processingResource;
+					languageAnalyser.setCorpus(null);
+					languageAnalyser.setDocument(null);
+				}
 			}
-			ProcessingResource processingResource = processingResources.get(processingResourceIndex);
-			if (processingResource instanceof LanguageAnalyser) {
-				LanguageAnalyser languageAnalyser = (LanguageAnalyser) processingResource;
-				languageAnalyser.setCorpus(corpus);
-				languageAnalyser.setDocument(document);
+			if (metrics != null) {
+				metrics.documentProcessed();
 			}
-			runComponent(documentIndex, processingResourceIndex, processingResource);
-			if (processingResource instanceof LanguageAnalyser) {
-				LanguageAnalyser languageAnalyser = (LanguageAnalyser) processingResource;
-				languageAnalyser.setCorpus(null);
-				languageAnalyser.setDocument(null);
+		} finally {
+			documentCompleted(processingResources, document);
+		}
+	}
+
+	private void documentCompleted(List<ProcessingResource> processingResources, Document document) {
+		for (ProcessingResource processingResource : processingResources) {
+			if (processingResource instanceof DocumentCompletionAware) {
+				try {
+					((DocumentCompletionAware) processingResource).documentCompleted(document);
+				} catch (RuntimeException e) {
+					logger.error("exception occured while completing " + document.getName(), e);
+				}
 			}
 		}
 	}
@@ -375,7 +891,13 @@ public class ParallelDocumentAnalyserController extends AbstractController
 	protected void runComponent(int documentIndex, int processingResourceIndex, ProcessingResource processingResource)
 			throws ExecutionException {
 		try {
-			processingResource.execute();
+			if (metrics != null) {
+				long start = System.nanoTime();
+				processingResource.execute();
+				metrics.processingResourceExecuted(processingResourceIndex, System.nanoTime() - start);
+			} else {
+				processingResource.execute();
+			}
 		} catch (Exception e) {
 			throw new ExecutionException(
 					"failed to run processing resource " + processingResourceIndex + " on document " + documentIndex,
@@ -399,8 +921,10 @@ public class ParallelDocumentAnalyserController extends AbstractController
 	protected void interruptParallel() {
 		interrupted = true;
 		queue.interrupt();
-		for (ProcessingResource processingResource : parallelProcessingResources) {
-			processingResource.interrupt();
+		synchronized (parallelProcessingResources) {
+			for (ProcessingResource processingResource : parallelProcessingResources) {
+				processingResource.interrupt();
+			}
 		}
 	}
 
@@ -447,6 +971,116 @@ public class ParallelDocumentAnalyserController extends AbstractController
 		return orderedDocumentLoading;
 	}
 
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "synchronize the access of the corpus per document index instead of locking the whole corpus (shared with the cache resources)", defaultValue = "false")
+	public void setStripedCorpusLocks(Boolean stripedCorpusLocks) {
+		this.stripedCorpusLocks = stripedCorpusLocks;
+	}
+
+	public Boolean getStripedCorpusLocks() {
+		return stripedCorpusLocks;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "use a queue without a shared lock for submitting and completing parallel tasks (scales better for many parallel tasks and short documents)", defaultValue = "false")
+	public void setConcurrentQueue(Boolean concurrentQueue) {
+		this.concurrentQueue = concurrentQueue;
+	}
+
+	public Boolean getConcurrentQueue() {
+		return concurrentQueue;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "each parallel task keeps its own pipeline for the whole run and pulls the next document itself (avoids moving pipelines between threads)", defaultValue = "false")
+	public void setPinnedPipelines(Boolean pinnedPipelines) {
+		this.pinnedPipelines = pinnedPipelines;
+	}
+
+	public Boolean getPinnedPipelines() {
+		return pinnedPipelines;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "keep duplicated pipelines between executions (released if processing resources or their parameters change)", defaultValue = "false")
+	public void setKeepDuplicatedPipelines(Boolean keepDuplicatedPipelines) {
+		this.keepDuplicatedPipelines = keepDuplicatedPipelines;
+	}
+
+	public Boolean getKeepDuplicatedPipelines() {
+		return keepDuplicatedPipelines;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "start on the original pipeline and duplicate further pipelines only while documents wait for a free pipeline", defaultValue = "false")
+	public void setElasticDuplication(Boolean elasticDuplication) {
+		this.elasticDuplication = elasticDuplication;
+	}
+
+	public Boolean getElasticDuplication() {
+		return elasticDuplication;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "load up to n documents ahead in corpus order on a separate thread, so parallel tasks do not wait for loading (0 disables prefetching)", defaultValue = "0")
+	public void setPrefetchDepth(Integer prefetchDepth) {
+		this.prefetchDepth = prefetchDepth;
+	}
+
+	public Integer getPrefetchDepth() {
+		return prefetchDepth;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "unload finished documents in batches on n separate threads, so parallel tasks continue with the next document (0 unloads on the processing thread)", defaultValue = "0")
+	public void setUnloadThreads(Integer unloadThreads) {
+		this.unloadThreads = unloadThreads;
+	}
+
+	public Integer getUnloadThreads() {
+		return unloadThreads;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "record time and count per processing resource, document loading/unloading and waiting (published as controller features)", defaultValue = "false")
+	public void setCollectMetrics(Boolean collectMetrics) {
+		this.collectMetrics = collectMetrics;
+	}
+
+	public Boolean getCollectMetrics() {
+		return collectMetrics;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "run the pipeline only once per distinct document content and copy annotations, relations and features to the duplicates (processing resources do not see duplicates, e.g. exporters)", defaultValue = "false")
+	public void setDeduplicateDocuments(Boolean deduplicateDocuments) {
+		this.deduplicateDocuments = deduplicateDocuments;
+	}
+
+	public Boolean getDeduplicateDocuments() {
+		return deduplicateDocuments;
+	}
+
+	@RunTime
+	@Optional
+	@CreoleParameter(comment = "keep the results of the n most recently processed distinct documents for later duplicates (duplicates arriving while their original is processed are always served)", defaultValue = "100")
+	public void setDeduplicationResults(Integer deduplicationResults) {
+		this.deduplicationResults = deduplicationResults;
+	}
+
+	public Integer getDeduplicationResults() {
+		return deduplicationResults;
+	}
+
 	@RunTime
 	@Optional
 	@CreoleParameter(comment = "use existing executor service (otherwise, a new one will be generated and shutdown, if resource is deleted)")
@@ -461,6 +1095,7 @@ public class ParallelDocumentAnalyserController extends AbstractController
 	@Override
 	public void cleanup() {
 		Gate.getCreoleRegister().removeCreoleListener(this);
+		invalidateDuplicatedPipelines();
 		if (processingResources != null && !processingResources.isEmpty()) {
 			try {
 				List<Resource> otherControllers = Gate.getCreoleRegister().getAllInstances("gate.Controller");
@@ -490,21 +1125,25 @@ public class ParallelDocumentAnalyserController extends AbstractController
 
 	@Override
 	public void setPRs(Collection<? extends ProcessingResource> processingResources) {
+		invalidateDuplicatedPipelines();
 		this.processingResources.clear();
 		this.processingResources.addAll(processingResources);
 	}
 
 	public void add(int index, ProcessingResource processingResource) {
+		invalidateDuplicatedPipelines();
 		processingResources.add(index, processingResource);
 		fireResourceAdded(new ControllerEvent(this, ControllerEvent.RESOURCE_ADDED, processingResource));
 	}
 
 	public void add(ProcessingResource processingResource) {
+		invalidateDuplicatedPipelines();
 		processingResources.add(processingResource);
 		fireResourceAdded(new ControllerEvent(this, ControllerEvent.RESOURCE_ADDED, processingResource));
 	}
 
 	public ProcessingResource remove(int index) {
+		invalidateDuplicatedPipelines();
 		ProcessingResource old = processingResources.remove(index);
 		fireResourceRemoved(new ControllerEvent(this, ControllerEvent.RESOURCE_REMOVED, old));
 		return old;
@@ -512,12 +1151,15 @@ public class ParallelDocumentAnalyserController extends AbstractController
 
 	public boolean remove(ProcessingResource processingResource) {
 		boolean changed = processingResources.remove(processingResource);
-		if (changed)
+		if (changed) {
+			invalidateDuplicatedPipelines();
 			fireResourceRemoved(new ControllerEvent(this, ControllerEvent.RESOURCE_REMOVED, processingResource));
+		}
 		return changed;
 	}
 
 	public ProcessingResource set(int index, ProcessingResource pr) {
+		invalidateDuplicatedPipelines();
 		return processingResources.set(index, pr);
 	}
 
@@ -0,0 +1,18 @@
+package gate.controllers;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+
+public interface TaskQueue {
+
+	public void submit(Iterator<Runnable> tasks);
+
+	public void interrupt();
+
+	public boolean isInterrupted();
+
+	public boolean hasCompleted();
+
+	public void awaitCompleted() throws InterruptedException, ExecutionException;
+
+}
@@ -0,0 +1,366 @@
+package gate.languageanalysers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import gate.Annotation;
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.languageanalysers.Cache.ContentHash;
+import gate.relations.Relation;
+import gate.relations.RelationSet;
+import gate.util.GateRuntimeException;
+import gate.util.InvalidOffsetException;
+
+/**
+ * Binary snapshot of the annotations, relations and features of a processed
+ * document. Feature values are restricted to strings, numbers, booleans and
+ * lists of those, so no classes are instantiated from cache data.
+ */
+class AnnotationSnapshot {
+
+	private static final byte VERSION = 3;
+
+	// version, content length and content checksum
+	private static final int HEADER_SIZE = 17;
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INTEGER = 2;
+	private static final byte LONG = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte BOOLEAN = 5;
+	private static final byte FLOAT = 6;
+	private static final byte LIST = 7;
+
+	private AnnotationSnapshot() {
+	}
+
+	/**
+	 * @param annotationSetNames
+	 *            the annotation sets to include (null includes all)
+	 * @param relationSetNames
+	 *            the annotation sets to include relations from (null includes
+	 *            all)
+	 * @param featureKeys
+	 *            the document features to include (null includes all)
+	 * @return the snapshot or null, if a feature value has an unsupported type
+	 */
+	public static byte[] write(Document document, ContentHash contentHash, Set<String> annotationSetNames,
+			Set<String> relationSetNames, Set<Object> featureKeys) {
+		List<String> names = new ArrayList<>();
+		if (annotationSetNames == null || annotationSetNames.contains("")) {
+			names.add("");
+		}
+		for (String annotationSetName : document.getAnnotationSetNames()) {
+			if (annotationSetName.length() > 0
+					&& (annotationSetNames == null || annotationSetNames.contains(annotationSetName))) {
+				names.add(annotationSetName);
+			}
+		}
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeByte(VERSION);
+			output.writeLong(contentHash.getLength());
+			output.writeLong(contentHash.getChecksum());
+
+			Map<Object, Object> features = new HashMap<>();
+			for (Entry<Object, Object> entry : document.getFeatures().entrySet()) {
+				if (featureKeys == null || featureKeys.contains(entry.getKey())) {
+					features.put(entry.getKey(), entry.getValue());
+				}
+			}
+			writeFeatures(output, features);
+
+			output.writeInt(names.size());
+			for (String name : names) {
+				AnnotationSet annotationSet = name.isEmpty() ? document.getAnnotations()
+						: document.getAnnotations(name);
+				writeString(output, name);
+				output.writeInt(annotationSet.size());
+				for (Annotation annotation : annotationSet) {
+					output.writeInt(annotation.getId());
+					output.writeLong(annotation.getStartNode().getOffset());
+					output.writeLong(annotation.getEndNode().getOffset());
+					writeString(output, annotation.getType());
+					writeFeatures(output, annotation.getFeatures());
+				}
+				RelationSet relations = annotationSet.isEmpty()
+						|| (relationSetNames != null && !relationSetNames.contains(name)) ? null
+								: annotationSet.getRelations();
+				if (relations == null || relations.isEmpty()) {
+					output.writeInt(0);
+				} else {
+					output.writeInt(relations.size());
+					for (Relation relation : relations) {
+						writeString(output, relation.getType());
+						int[] members = relation.getMembers();
+						output.writeInt(members.length);
+						for (int member : members) {
+							output.writeInt(member);
+						}
+					}
+				}
+			}
+			output.flush();
+			return bytes.toByteArray();
+		} catch (UnsupportedValueException e) {
+			return null;
+		} catch (IOException e) {
+			throw new GateRuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return true, if the snapshot has the current format and (if verified)
+	 *         length and checksum of its content match
+	 */
+	public static boolean isApplicable(byte[] snapshot, ContentHash contentHash, boolean verify) {
+		if (snapshot.length < HEADER_SIZE || snapshot[0] != VERSION) {
+			return false;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(snapshot, 1, HEADER_SIZE - 1);
+		return !verify || (buffer.getLong() == contentHash.getLength() && buffer.getLong() == contentHash.getChecksum());
+	}
+
+	/**
+	 * @return true, if the snapshot has the current format and contains only
+	 *         supported values (e.g. for snapshots from other processes)
+	 */
+	public static boolean isValid(byte[] snapshot) {
+		try {
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(snapshot));
+			if (input.readByte() != VERSION) {
+				return false;
+			}
+			skipFully(input, HEADER_SIZE - 1);
+			readFeatures(input);
+			int annotationSetCount = input.readInt();
+			for (int i = 0; i < annotationSetCount; i++) {
+				readString(input);
+				int annotationCount = input.readInt();
+				for (int j = 0; j < annotationCount; j++) {
+					// id and offsets
+					skipFully(input, 20);
+					readString(input);
+					readFeatures(input);
+				}
+				int relationCount = input.readInt();
+				for (int j = 0; j < relationCount; j++) {
+					readString(input);
+					skipFully(input, input.readInt() * 4);
+				}
+			}
+			return input.available() == 0;
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Adds the annotations, relations and features of a snapshot to a
+	 * document, restricted to the given selection (null selects all).
+	 */
+	public static void apply(byte[] snapshot, Document document, Set<String> annotationSetNames,
+			Set<String> relationSetNames, Set<Object> featureKeys) {
+		try {
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(snapshot));
+			byte version = input.readByte();
+			if (version != VERSION) {
+				throw new GateRuntimeException("unsupported snapshot version " + version);
+			}
+			input.skipBytes(HEADER_SIZE - 1);
+
+			FeatureMap features = readFeatures(input);
+			for (Entry<Object, Object> entry : features.entrySet()) {
+				if (featureKeys == null || featureKeys.contains(entry.getKey())) {
+					document.getFeatures().put(entry.getKey(), entry.getValue());
+				}
+			}
+
+			Map<Integer, Integer> annotationMapping = new HashMap<>();
+			int annotationSetCount = input.readInt();
+			for (int i = 0; i < annotationSetCount; i++) {
+				String name = readString(input);
+				boolean copyAnnotations = annotationSetNames == null || annotationSetNames.contains(name);
+				boolean copyRelations = copyAnnotations
+						&& (relationSetNames == null || relationSetNames.contains(name));
+				AnnotationSet annotationSet = !copyAnnotations ? null
+						: name.isEmpty() ? document.getAnnotations() : document.getAnnotations(name);
+
+				annotationMapping.clear();
+				int annotationCount = input.readInt();
+				for (int j = 0; j < annotationCount; j++) {
+					int id = input.readInt();
+					long start = input.readLong();
+					long end = input.readLong();
+					String type = readString(input);
+					FeatureMap annotationFeatures = readFeatures(input);
+					if (copyAnnotations) {
+						try {
+							annotationMapping.put(id, annotationSet.add(start, end, type, annotationFeatures));
+						} catch (InvalidOffsetException e) {
+							throw new GateRuntimeException(e);
+						}
+					}
+				}
+
+				int relationCount = input.readInt();
+				for (int j = 0; j < relationCount; j++) {
+					String type = readString(input);
+					int[] members = new int[input.readInt()];
+					for (int k = 0; k < members.length; k++) {
+						members[k] = input.readInt();
+					}
+					if (copyRelations && mapMembers(members, annotationMapping)) {
+						annotationSet.getRelations().addRelation(type, members);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new GateRuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return false, if a member is not an annotation of the same set (so the
+	 *         relation is skipped)
+	 */
+	private static boolean mapMembers(int[] members, Map<Integer, Integer> annotationMapping) {
+		for (int i = 0; i < members.length; i++) {
+			Integer member = annotationMapping.get(members[i]);
+			if (member == null) {
+				return false;
+			}
+			members[i] = member;
+		}
+		return true;
+	}
+
+	private static void writeFeatures(DataOutputStream output, Map<Object, Object> features) throws IOException {
+		if (features == null) {
+			output.writeInt(0);
+			return;
+		}
+		output.writeInt(features.size());
+		for (Entry<Object, Object> entry : features.entrySet()) {
+			writeValue(output, entry.getKey());
+			writeValue(output, entry.getValue());
+		}
+	}
+
+	private static FeatureMap readFeatures(DataInputStream input) throws IOException {
+		FeatureMap features = Factory.newFeatureMap();
+		int size = input.readInt();
+		for (int i = 0; i < size; i++) {
+			Object key = readValue(input);
+			features.put(key, readValue(input));
+		}
+		return features;
+	}
+
+	private static void writeValue(DataOutputStream output, Object value) throws IOException {
+		if (value == null) {
+			output.writeByte(NULL);
+		} else if (value instanceof String) {
+			output.writeByte(STRING);
+			writeString(output, (String) value);
+		} else if (value instanceof Integer) {
+			output.writeByte(INTEGER);
+			output.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			output.writeByte(LONG);
+			output.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			output.writeByte(DOUBLE);
+			output.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			output.writeByte(BOOLEAN);
+			output.writeBoolean((Boolean) value);
+		} else if (value instanceof Float) {
+			output.writeByte(FLOAT);
+			output.writeFloat((Float) value);
+		} else if (value instanceof List) {
+			output.writeByte(LIST);
+			output.writeInt(((List<?>) value).size());
+			for (Object element : (List<?>) value) {
+				writeValue(output, element);
+			}
+		} else {
+			throw new UnsupportedValueException();
+		}
+	}
+
+	private static Object readValue(DataInputStream input) throws IOException {
+		byte type = input.readByte();
+		switch (type) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(input);
+		case INTEGER:
+			return input.readInt();
+		case LONG:
+			return input.readLong();
+		case DOUBLE:
+			return input.readDouble();
+		case BOOLEAN:
+			return input.readBoolean();
+		case FLOAT:
+			return input.readFloat();
+		case LIST:
+			int size = input.readInt();
+			List<Object> list = new ArrayList<>(Math.min(size, 1024));
+			for (int i = 0; i < size; i++) {
+				list.add(readValue(input));
+			}
+			return list;
+		default:
+			throw new IOException("unknown value type " + type);
+		}
+	}
+
+	private static void writeString(DataOutputStream output, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static void skipFully(DataInputStream input, int length) throws IOException {
+		if (length < 0 || input.skipBytes(length) != length) {
+			throw new EOFException();
+		}
+	}
+
+	private static String readString(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		// snapshots are read from byte arrays
+		if (length < 0 || length > input.available()) {
+			throw new EOFException();
+		}
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static class UnsupportedValueException extends IOException {
+		private static final long serialVersionUID = 1L;
+	}
+
+}
@@ -0,0 +1,94 @@
+package gate.languageanalysers;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free Bloom filter over cache keys, which answers definite misses.
+ */
+class BloomFilter {
+
+	private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+	private final long expectedEntries;
+	private final LongAdder entries = new LongAdder();
+
+	BloomFilter(long expectedEntries) {
+		this.expectedEntries = Math.max(expectedEntries, 1024);
+		long optimalBits = (long) (-this.expectedEntries * Math.log(FALSE_POSITIVE_PROBABILITY)
+				/ (Math.log(2) * Math.log(2)));
+		int words = (int) Math.min((optimalBits + 63) / 64, Integer.MAX_VALUE - 8);
+		this.bits = new AtomicLongArray(words);
+		this.bitCount = (long) words * 64;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.expectedEntries * Math.log(2)));
+	}
+
+	public long getExpectedEntries() {
+		return expectedEntries;
+	}
+
+	/**
+	 * @return the number of added keys (including keys added more than once)
+	 */
+	public long getEntries() {
+		return entries.sum();
+	}
+
+	/**
+	 * Restarts counting the added keys at the given number (e.g. the keys
+	 * actually stored).
+	 */
+	public void resetEntries(long entries) {
+		this.entries.reset();
+		this.entries.add(entries);
+	}
+
+	public void put(byte[] key) {
+		long hash = hash(key);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = Math.floorMod(hash1 + (long) i * hash2, bitCount);
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			long value = bits.get(word);
+			while ((value & mask) == 0 && !bits.compareAndSet(word, value, value | mask)) {
+				value = bits.get(word);
+			}
+		}
+		entries.increment();
+	}
+
+	/**
+	 * @return false, if the key was never added
+	 */
+	public boolean mightContain(byte[] key) {
+		long hash = hash(key);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = Math.floorMod(hash1 + (long) i * hash2, bitCount);
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void clear() {
+		for (int i = 0; i < bits.length(); i++) {
+			bits.set(i, 0);
+		}
+		entries.reset();
+	}
+
+	private static long hash(byte[] key) {
+		XxHash64Digest digest = new XxHash64Digest();
+		digest.update(key);
+		return Murmur3Digest.getLongLittleEndian(digest.digest(), 0);
+	}
+
+}
@@ -1,81 +1,927 @@
 package gate.languageanalysers;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.mapdb.Serializer;
 
 import gate.Corpus;
+import gate.DataStore;
+import gate.Factory;
+import gate.FeatureMap;
 import gate.Gate;
+import gate.LanguageResource;
 import gate.Resource;
+import gate.creole.ResourceInstantiationException;
 import gate.event.CreoleEvent;
 import gate.event.CreoleListener;
+import gate.languageanalysers.FrontCache.HashKey;
 
 public class Cache {
+	private static Logger logger = Logger.getLogger(Cache.class);
 
 	private static final Map<String, Cache> caches = new HashMap<>();
 
 	public static synchronized Cache getInstance(String name) {
-		return caches.computeIfAbsent(name, (n) -> new Cache(n));
+		return getInstance(name, null);
+	}
+
+	/**
+	 * @return the statistics of the cache with the given name or null, if there
+	 *         is no such cache
+	 */
+	public static synchronized CacheStatistics getStatistics(String name) {
+		Cache cache = caches.get(name);
+		return cache != null ? cache.statistics : null;
+	}
+
+	/**
+	 * @param file
+	 *            the file of a persistent cache, which is reopened after
+	 *            restarts (null uses an existing or a temporary cache)
+	 */
+	public static synchronized Cache getInstance(String name, File file) {
+		return getInstance(name, file, 0, 0, 0);
 	}
 
-	private final Map<String, Corpus> corpora = new HashMap<>();
+	/**
+	 * The limits are applied, when the cache is created, and ignored for an
+	 * already existing cache.
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of entries (0 for unlimited)
+	 * @param maxBytes
+	 *            the maximum size of the store on disk (0 for unlimited)
+	 * @param timeToLiveSeconds
+	 *            the time after which entries expire (0 for unlimited)
+	 */
+	public static synchronized Cache getInstance(String name, File file, long maxEntries, long maxBytes,
+			long timeToLiveSeconds) {
+		return getInstance(name, file, maxEntries, maxBytes, timeToLiveSeconds, 0);
+	}
+
+	/**
+	 * @param sharedPort
+	 *            the loopback port of a cache shared with other processes on
+	 *            this host (0 for a cache of this process only): the first
+	 *            process hosts a {@link CacheServer} with its cache (using file
+	 *            and limits), the others connect to it
+	 */
+	public static synchronized Cache getInstance(String name, File file, long maxEntries, long maxBytes,
+			long timeToLiveSeconds, int sharedPort) {
+		Cache cache = caches.get(name);
+		if (cache == null) {
+			cache = new Cache(name, file, maxEntries, maxBytes, timeToLiveSeconds, sharedPort);
+			caches.put(name, cache);
+		} else if (file != null && !file.equals(cache.file)) {
+			throw new IllegalStateException("cache " + name + " already opened with file " + cache.file);
+		} else if (sharedPort > 0 && sharedPort != cache.sharedPort) {
+			throw new IllegalStateException("cache " + name + " already opened with shared port " + cache.sharedPort);
+		}
+		return cache;
+	}
 
+	private static synchronized void removeInstance(Cache cache) {
+		caches.remove(cache.name, cache);
+	}
+
+	// corpus id, index, content length and content checksum
+	private static final int ENTRY_SIZE = 24;
+	private static final long COMMIT_SECONDS = 10;
+	private static final long EXPIRE_MILLIS = 1000;
+	private static final long EXPECTED_ENTRIES = 1 << 20;
+	// segments of the store and of the entries map (power of two)
+	private static final int CONCURRENCY = Math.max(8,
+			Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+	private final Map<Integer, Corpus> corpora = new ConcurrentHashMap<>();
+	// read on every add, so it is not locked
+	private final Map<CorpusInstance, Integer> corpusInstanceIds = new ConcurrentHashMap<>();
+	private final Set<Integer> unresolvedCorpusIds = ConcurrentHashMap.newKeySet();
+	private final Map<HashKey, Claim> claims = new ConcurrentHashMap<>();
+	private final ThreadLocal<Claim> ownClaims = new ThreadLocal<>();
+
+	private final String name;
+	private final File file;
+	private final int sharedPort;
+	private final CacheClient client;
+	private final CacheServer server;
+	private final CacheStatistics statistics;
+	private final ObjectName statisticsName;
 	private final DB mapdb;
-	private final Map<String, String> corpusNameMap;
-	private final Map<String, Integer> indexMap;
+	private final Map<String, Integer> corpusIds;
+	private final Map<Integer, String> corpusReferences;
+	// ids are never reused, since entries of a retired id may still be stored
+	private int nextCorpusId;
+	// null for a client of a shared cache
+	private final Map<byte[], byte[]> entries;
+	private final Map<byte[], byte[]> snapshots;
+
+	private final ScheduledExecutorService maintenanceExecutor;
+	private final Thread shutdownHook;
+	private volatile boolean uncommitted = false;
+
+	private volatile FrontCache<CacheResult> frontCache;
+
+	private final long minBloomFilterEntries;
+	private volatile BloomFilter bloomFilter;
+	private volatile BloomFilter rebuiltBloomFilter;
+	private volatile boolean bloomFilterReady = true;
+	private final AtomicBoolean bloomFilterRebuilding = new AtomicBoolean();
+
+	private Cache(String name, File file, long maxEntries, long maxBytes, long timeToLiveSeconds, int sharedPort) {
+		this.name = name;
+		this.file = file;
+		this.sharedPort = sharedPort;
+		ServerSocket serverSocket = null;
+		if (sharedPort > 0) {
+			try {
+				serverSocket = CacheServer.bind(sharedPort);
+			} catch (IOException e) {
+				throw new IllegalStateException("failed to open shared cache port " + sharedPort, e);
+			}
+		}
+		maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cache-maintenance-" + name);
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		if (sharedPort > 0 && serverSocket == null) {
+			// hosted by another process, which applies its file and limits
+			mapdb = null;
+			corpusIds = null;
+			corpusReferences = null;
+			client = new CacheClient(sharedPort);
+			entries = null;
+			snapshots = null;
+			minBloomFilterEntries = 0;
+			bloomFilter = new BloomFilter(0);
+			bloomFilterReady = false;
+		} else {
+			DBMaker.Maker maker;
+			if (file != null) {
+				maker = DBMaker.fileDB(file).transactionEnable();
+			} else {
+				maker = DBMaker.tempFileDB();
+			}
+			mapdb = maker.fileMmapEnableIfSupported().fileMmapPreclearDisable().cleanerHackEnable()
+					.fileChannelEnable().concurrencyScale(CONCURRENCY).make();
+
+			corpusIds = mapdb.hashMap("corpusIds", Serializer.STRING, Serializer.INTEGER).createOrOpen();
+			corpusReferences = mapdb.hashMap("corpusReferences", Serializer.INTEGER, Serializer.STRING)
+					.createOrOpen();
+			nextCorpusId = corpusIds.isEmpty() ? 0 : Collections.max(corpusIds.values()) + 1;
+			client = null;
+			entries = createEntriesMap("entries", maxEntries, maxBytes, timeToLiveSeconds).modificationListener(
+					(key, oldValue, newValue, triggered) -> entryModified(key, newValue)).createOrOpen();
+			snapshots = createEntriesMap("snapshots", maxEntries, maxBytes, timeToLiveSeconds).createOrOpen();
+			if (file != null) {
+				purgeTransientCorpora();
+			}
+
+			minBloomFilterEntries = maxEntries > 0 ? maxEntries : EXPECTED_ENTRIES;
+			bloomFilter = new BloomFilter(minBloomFilterEntries);
+			if (!entries.isEmpty() || !snapshots.isEmpty()) {
+				// reopened persistent cache
+				bloomFilterReady = false;
+				bloomFilterRebuilding.set(true);
+				rebuildBloomFilter(bloomFilter);
+			}
+		}
+
+		statistics = new CacheStatistics(this::size, this::getBytesOnDisk);
+		statisticsName = registerStatistics(name, statistics);
+
+		if (file != null && mapdb != null) {
+			maintenanceExecutor.scheduleWithFixedDelay(this::commit, COMMIT_SECONDS, COMMIT_SECONDS,
+					TimeUnit.SECONDS);
+			shutdownHook = new Thread(this::close, "cache-shutdown-" + name);
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+		} else {
+			shutdownHook = null;
+		}
+		if (file != null || sharedPort > 0) {
+			Gate.addCreoleListener(new CorpusReferenceListener(this));
+		}
+		if (serverSocket != null) {
+			try {
+				server = new CacheServer(this, serverSocket);
+			} catch (IOException e) {
+				try {
+					serverSocket.close();
+				} catch (IOException closeException) {
+					e.addSuppressed(closeException);
+				}
+				close();
+				throw new IllegalStateException("failed to start server of shared cache on port " + sharedPort, e);
+			}
+		} else {
+			server = null;
+		}
+	}
+
+	/**
+	 * Size based eviction of MapDB needs an expiration queue, so without time to
+	 * live the entries expire in order of their last access.
+	 */
+	private DB.HashMapMaker<byte[], byte[]> createEntriesMap(String name, long maxEntries, long maxBytes,
+			long timeToLiveSeconds) {
+		DB.HashMapMaker<byte[], byte[]> maker = mapdb.hashMap(name, Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY)
+				.layout(CONCURRENCY, 16, 4);
+		if (maxEntries <= 0 && maxBytes <= 0 && timeToLiveSeconds <= 0) {
+			return maker;
+		}
+		if (timeToLiveSeconds > 0) {
+			maker = maker.expireAfterCreate(timeToLiveSeconds, TimeUnit.SECONDS);
+		} else {
+			maker = maker.expireAfterCreate().expireAfterGet();
+		}
+		if (maxEntries > 0) {
+			maker = maker.counterEnable().expireMaxSize(maxEntries);
+		}
+		if (maxBytes > 0) {
+			maker = maker.expireStoreSize(maxBytes);
+		}
+		return maker.expireExecutor(maintenanceExecutor).expireExecutorPeriod(EXPIRE_MILLIS);
+	}
+
+	/**
+	 * Drops the front cache result of an entry, which expired or was removed
+	 * from the store.
+	 */
+	private void entryModified(byte[] key, byte[] newValue) {
+		FrontCache<CacheResult> frontCache = this.frontCache;
+		if (newValue == null && frontCache != null) {
+			frontCache.remove(key);
+		}
+	}
+
+	/**
+	 * Transient corpora of an earlier run of a reopened persistent cache can
+	 * never be bound again, so their ids (without corpus reference) and entries
+	 * are removed.
+	 */
+	private void purgeTransientCorpora() {
+		Map<String, Integer> transientCorpusIds = new HashMap<>();
+		for (Map.Entry<String, Integer> entry : corpusIds.entrySet()) {
+			if (!corpusReferences.containsKey(entry.getValue())) {
+				transientCorpusIds.put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (!transientCorpusIds.isEmpty()) {
+			purgeEntries(transientCorpusIds);
+		}
+	}
+
+	private static ObjectName registerStatistics(String name, CacheStatistics statistics) {
+		try {
+			ObjectName objectName = new ObjectName(
+					"gate.languageanalysers:type=Cache,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, objectName);
+			return objectName;
+		} catch (JMException e) {
+			logger.warn("failed to register statistics of cache " + name, e);
+			return null;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return true, if this process hosts the server of a shared cache
+	 */
+	public boolean isHostingServer() {
+		return server != null;
+	}
+
+	public CacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	private long size() {
+		return client != null ? client.size() : entries.size();
+	}
+
+	private long getBytesOnDisk() {
+		if (mapdb == null || mapdb.isClosed()) {
+			return 0;
+		}
+		long bytes = 0;
+		for (String storeFile : mapdb.getStore().getAllFiles()) {
+			bytes += new File(storeFile).length();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Makes all added entries of a persistent cache durable (also done
+	 * periodically and on shutdown).
+	 */
+	public synchronized void commit() {
+		if (file != null && mapdb != null && uncommitted && !mapdb.isClosed()) {
+			uncommitted = false;
+			mapdb.commit();
+		}
+	}
 
-	private Cache(String name) {
-		mapdb = DBMaker.tempFileDB().fileMmapEnableIfSupported().fileMmapPreclearDisable().cleanerHackEnable()
-				.fileChannelEnable().make();
+	public synchronized void close() {
+		removeInstance(this);
+		if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// already shutting down
+			}
+		}
+		if (server != null) {
+			server.close();
+		}
+		if (client != null) {
+			client.close();
+		}
+		if (mapdb != null && !mapdb.isClosed()) {
+			commit();
+			mapdb.close();
+		}
+		maintenanceExecutor.shutdown();
+		if (statisticsName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+			} catch (JMException e) {
+				// already unregistered
+			}
+		}
+	}
 
-		indexMap = mapdb.hashMap("corpusName", Serializer.STRING, Serializer.INTEGER).createOrOpen();
-		corpusNameMap = mapdb.hashMap("index", Serializer.STRING, Serializer.STRING).createOrOpen();
+	/**
+	 * Enables (or enlarges) the on-heap front cache, which holds the locations
+	 * (and payloads) of the most recently hit entries.
+	 */
+	public synchronized void setFrontCacheSize(int size) {
+		FrontCache<CacheResult> old = frontCache;
+		if (size > 0 && (old == null || old.getCapacity() < size)) {
+			frontCache = new FrontCache<>(size, null);
+			if (old != null) {
+				old.clear();
+			}
+		}
 	}
 
-	public CacheResult get(String key) {
-		String corpusName = corpusNameMap.get(key);
-		if (corpusName != null) {
-			Corpus corpus = corpora.get(corpusName);
+	public CacheResult get(byte[] key) {
+		FrontCache<CacheResult> frontCache = this.frontCache;
+		if (frontCache != null) {
+			CacheResult result = frontCache.get(key);
+			if (result != null) {
+				return result;
+			}
+		}
+		byte[] entry = getEntry(key);
+		if (entry != null) {
+			ByteBuffer buffer = ByteBuffer.wrap(entry);
+			int corpusId = buffer.getInt();
+			int index = buffer.getInt();
+			long contentLength = -1;
+			long contentChecksum = 0;
+			if (entry.length >= ENTRY_SIZE) {
+				contentLength = buffer.getLong();
+				contentChecksum = buffer.getLong();
+			}
+			Corpus corpus = corpora.get(corpusId);
+			if (corpus == null && !unresolvedCorpusIds.contains(corpusId)) {
+				corpus = resolveCorpus(corpusId);
+			}
 			if (corpus != null) {
-				Integer index = indexMap.get(key);
-				return new CacheResult(corpus, index);
+				CacheResult result = new CacheResult(corpus, index, contentLength, contentChecksum);
+				if (frontCache != null) {
+					frontCache.put(key, result);
+				}
+				return result;
 			}
-			corpusNameMap.remove(key);
+			// entries of unloaded corpora are purged in the background, so misses
+			// never write to the store
 		}
-		indexMap.remove(key);
 		return null;
 	}
 
-	public void add(Corpus corpus, Integer index, String hash) {
-		if (!corpora.containsValue(corpus)) {
-			Gate.addCreoleListener(new CorpusUnloadListener(corpus, this));
+	byte[] getEntry(byte[] key) {
+		if (!mightContain(key)) {
+			return null;
+		}
+		return client != null ? client.get(CacheServer.GET_ENTRY, key) : entries.get(key);
+	}
+
+	/**
+	 * Looks up a key, but claims a missing key for the calling thread, so
+	 * concurrent lookups wait for it until it is added, released or expired.
+	 * 
+	 * @return the result or null, if the key was claimed by the calling thread
+	 *         or waiting timed out
+	 */
+	public CacheResult getOrClaim(byte[] key, long timeoutMillis) {
+		HashKey hashKey = new HashKey(key);
+		releaseOwnClaim(hashKey);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (true) {
+			CacheResult result = get(key);
+			if (result != null) {
+				return result;
+			}
+			Claim claim = claims.get(hashKey);
+			if (claim == null || claim.isExpired()) {
+				Claim ownClaim = new Claim(hashKey, timeoutMillis);
+				if (claim == null ? claims.putIfAbsent(hashKey, ownClaim) == null
+						: claims.replace(hashKey, claim, ownClaim)) {
+					if (claim != null) {
+						claim.latch.countDown();
+					}
+					ownClaims.set(ownClaim);
+					// the key may have been added between the lookup and the claim
+					result = get(key);
+					if (result != null) {
+						releaseClaim(ownClaim);
+					}
+					return result;
+				}
+				continue;
+			}
+			if (claim.owner == Thread.currentThread()) {
+				return null;
+			}
+			long remaining = deadline - System.nanoTime();
+			boolean released = false;
+			if (remaining > 0) {
+				long start = System.nanoTime();
+				try {
+					released = claim.latch.await(remaining, TimeUnit.NANOSECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				statistics.waited(System.nanoTime() - start);
+			}
+			if (!released) {
+				statistics.waitTimedOut();
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Releases the claim of the calling thread, since its document completed
+	 * (without adding the key, if it is still claimed).
+	 */
+	public void releaseOwnClaim() {
+		Claim ownClaim = ownClaims.get();
+		if (ownClaim != null) {
+			ownClaims.remove();
+			releaseClaim(ownClaim);
+		}
+	}
+
+	/**
+	 * Releases the claim of the calling thread for another key, if its document
+	 * completed without notification (e.g. in other controllers).
+	 */
+	private void releaseOwnClaim(HashKey hashKey) {
+		Claim ownClaim = ownClaims.get();
+		if (ownClaim != null && !ownClaim.key.equals(hashKey)) {
+			ownClaims.remove();
+			releaseClaim(ownClaim);
+		}
+	}
+
+	private void releaseClaim(Claim claim) {
+		claims.remove(claim.key, claim);
+		claim.latch.countDown();
+	}
+
+	/**
+	 * @return false, if the key was definitely never added
+	 */
+	private boolean mightContain(byte[] key) {
+		return !bloomFilterReady || bloomFilter.mightContain(key);
+	}
+
+	BloomFilter getBloomFilter() {
+		return bloomFilter;
+	}
+
+	private void addToBloomFilter(byte[] key) {
+		if (client != null) {
+			// the keys of a shared cache are added by other processes, too
+			return;
+		}
+		BloomFilter bloomFilter = this.bloomFilter;
+		while (true) {
+			bloomFilter.put(key);
+			BloomFilter rebuiltBloomFilter = this.rebuiltBloomFilter;
+			if (rebuiltBloomFilter != null && rebuiltBloomFilter != bloomFilter) {
+				rebuiltBloomFilter.put(key);
+			}
+			// a rebuild, which missed the key, may have replaced the filter meanwhile
+			BloomFilter currentBloomFilter = this.bloomFilter;
+			if (currentBloomFilter == bloomFilter) {
+				break;
+			}
+			bloomFilter = currentBloomFilter;
+		}
+		// grow (and drop expired keys), when the filter is saturated; keys added
+		// again are counted again, so the keys in the store decide
+		if (bloomFilter.getEntries() > 2 * bloomFilter.getExpectedEntries()
+				&& bloomFilterRebuilding.compareAndSet(false, true)) {
+			long storedKeys = (long) entries.size() + snapshots.size();
+			if (storedKeys > bloomFilter.getExpectedEntries()) {
+				rebuildBloomFilter(new BloomFilter(Math.max(storedKeys * 2, minBloomFilterEntries)));
+			} else {
+				bloomFilter.resetEntries(storedKeys);
+				bloomFilterRebuilding.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds the Bloom filter for the keys in the store (dropping expired
+	 * keys), unless a rebuild is running.
+	 */
+	void rebuildBloomFilter() {
+		if (client == null && bloomFilterRebuilding.compareAndSet(false, true)) {
+			rebuildBloomFilter(
+					new BloomFilter(Math.max(((long) entries.size() + snapshots.size()) * 2, minBloomFilterEntries)));
+		}
+	}
+
+	boolean isBloomFilterRebuilding() {
+		return bloomFilterRebuilding.get();
+	}
+
+	/**
+	 * Fills a new Bloom filter with all keys of the store in the background,
+	 * while added keys go to both filters, and replaces the current filter
+	 * afterwards. Adding threads check for the replacement, so keys missed by
+	 * the walk are added to the new filter, too.
+	 */
+	private void rebuildBloomFilter(BloomFilter rebuiltBloomFilter) {
+		if (maintenanceExecutor.isShutdown()) {
+			return;
+		}
+		this.rebuiltBloomFilter = rebuiltBloomFilter;
+		maintenanceExecutor.execute(() -> {
+			try {
+				for (byte[] key : entries.keySet()) {
+					rebuiltBloomFilter.put(key);
+				}
+				for (byte[] key : snapshots.keySet()) {
+					rebuiltBloomFilter.put(key);
+				}
+				bloomFilter = rebuiltBloomFilter;
+				bloomFilterReady = true;
+			} catch (RuntimeException e) {
+				logger.warn("failed to rebuild bloom filter of cache", e);
+			} finally {
+				this.rebuiltBloomFilter = null;
+				bloomFilterRebuilding.set(false);
+			}
+		});
+	}
+
+	public void add(Corpus corpus, Integer index, ContentHash contentHash) {
+		int corpusId = getCorpusId(corpus);
+		byte[] hash = contentHash.getHash();
+		byte[] entry = ByteBuffer.allocate(ENTRY_SIZE).putInt(corpusId).putInt(index)
+				.putLong(contentHash.getLength()).putLong(contentHash.getChecksum()).array();
+		putEntry(hash, entry);
+		statistics.added();
+	}
+
+	/**
+	 * Stores an entry (also of a client of the cache server) and releases
+	 * lookups waiting for it.
+	 */
+	void putEntry(byte[] hash, byte[] entry) {
+		if (client != null) {
+			client.put(CacheServer.PUT_ENTRY, hash, entry);
+		} else {
+			entries.put(hash, entry);
+		}
+		addToBloomFilter(hash);
+		FrontCache<CacheResult> frontCache = this.frontCache;
+		if (frontCache != null) {
+			frontCache.remove(hash);
+		}
+		Claim claim = claims.remove(new HashKey(hash));
+		if (claim != null) {
+			claim.latch.countDown();
+		}
+		if (!uncommitted) {
+			uncommitted = true;
+		}
+	}
+
+	/**
+	 * @return the annotation snapshot written for a hash or null
+	 */
+	public byte[] getSnapshot(byte[] hash) {
+		if (!mightContain(hash)) {
+			return null;
+		}
+		return client != null ? client.get(CacheServer.GET_SNAPSHOT, hash) : snapshots.get(hash);
+	}
+
+	public void addSnapshot(byte[] hash, byte[] snapshot) {
+		if (client != null) {
+			client.put(CacheServer.PUT_SNAPSHOT, hash, snapshot);
+		} else {
+			snapshots.put(hash, snapshot);
 		}
-		Corpus old = corpora.put(corpus.getName(), corpus);
-		if (old != null && old != corpus) {
-			throw new IllegalStateException("corpus has same name");
+		addToBloomFilter(hash);
+		if (!uncommitted) {
+			uncommitted = true;
 		}
-		synchronized (this) {
-			corpusNameMap.put(hash, corpus.getName());
-			indexMap.put(hash, index);
+	}
+
+	private int getCorpusId(Corpus corpus) {
+		Integer corpusId = corpusInstanceIds.get(new CorpusInstance(corpus));
+		if (corpusId != null) {
+			return corpusId;
+		}
+		return registerCorpus(corpus);
+	}
+
+	private synchronized int registerCorpus(Corpus corpus) {
+		Integer knownCorpusId = corpusInstanceIds.get(new CorpusInstance(corpus));
+		if (knownCorpusId != null) {
+			return knownCorpusId;
+		}
+		String corpusKey = createCorpusKey(corpus);
+		String corpusReference = null;
+		if (isPersistent(corpus)) {
+			corpusReference = corpus.getClass().getName() + "\n" + corpus.getDataStore().getStorageUrl() + "\n"
+					+ corpus.getLRPersistenceId();
+		}
+		int corpusId;
+		if (client != null) {
+			corpusId = client.registerCorpus(corpusKey, corpusReference);
+			if (corpusId < 0) {
+				// server not reachable, entries are dropped anyway
+				return corpusId;
+			}
+		} else {
+			corpusId = assignCorpusId(corpusKey, corpusReference);
+		}
+		Corpus old = corpora.get(corpusId);
+		if (old == null) {
+			bindCorpus(corpusId, corpusKey, corpus);
+		} else if (old != corpus) {
+			throw new IllegalStateException("corpus " + corpusKey + " already cached as another instance");
+		}
+		corpusInstanceIds.put(new CorpusInstance(corpus), corpusId);
+		return corpusId;
+	}
+
+	/**
+	 * Assigns the next id to an unknown corpus key (also for the clients of the
+	 * cache server).
+	 */
+	synchronized int assignCorpusId(String corpusKey, String corpusReference) {
+		Integer corpusId = corpusIds.get(corpusKey);
+		if (corpusId == null) {
+			corpusId = nextCorpusId++;
+			corpusIds.put(corpusKey, corpusId);
+			uncommitted = true;
+			if (corpusReference != null) {
+				corpusReferences.put(corpusId, corpusReference);
+			}
+		}
+		return corpusId;
+	}
+
+	String getCorpusReference(int corpusId) {
+		return client != null ? client.getCorpusReference(corpusId) : corpusReferences.get(corpusId);
+	}
+
+	private void bindCorpus(int corpusId, String corpusKey, Corpus corpus) {
+		Gate.addCreoleListener(new CorpusUnloadListener(corpus, corpusId, corpusKey, this));
+		corpora.put(corpusId, corpus);
+	}
+
+	/**
+	 * Binds a datastore corpus of a reopened persistent cache, either to the
+	 * already loaded corpus or by loading it from an open datastore.
+	 */
+	private synchronized Corpus resolveCorpus(int corpusId) {
+		Corpus corpus = corpora.get(corpusId);
+		if (corpus != null || unresolvedCorpusIds.contains(corpusId)) {
+			return corpus;
+		}
+		String corpusReference = getCorpusReference(corpusId);
+		if (corpusReference == null) {
+			// transient corpus (e.g. of another process sharing the cache)
+			unresolvedCorpusIds.add(corpusId);
+			return null;
+		}
+		String[] parts = corpusReference.split("\n", 3);
+		String className = parts[0];
+		String storageUrl = parts[1];
+		String persistenceId = parts[2];
+
+		for (LanguageResource languageResource : Gate.getCreoleRegister().getLrInstances()) {
+			if (languageResource instanceof Corpus && isPersistent(languageResource)
+					&& storageUrl.equals(languageResource.getDataStore().getStorageUrl())
+					&& persistenceId.equals(String.valueOf(languageResource.getLRPersistenceId()))) {
+				corpus = (Corpus) languageResource;
+				break;
+			}
+		}
+		if (corpus == null) {
+			for (DataStore dataStore : Gate.getDataStoreRegister()) {
+				if (storageUrl.equals(dataStore.getStorageUrl())) {
+					FeatureMap parameters = Factory.newFeatureMap();
+					parameters.put(DataStore.DATASTORE_FEATURE_NAME, dataStore);
+					parameters.put(DataStore.LR_ID_FEATURE_NAME, persistenceId);
+					try {
+						corpus = (Corpus) Factory.createResource(className, parameters);
+					} catch (ResourceInstantiationException e) {
+						logger.warn("failed to load cached corpus " + persistenceId + " from " + storageUrl, e);
+					}
+					break;
+				}
+			}
+		}
+		if (corpus == null) {
+			unresolvedCorpusIds.add(corpusId);
+			return null;
+		}
+		bindCorpus(corpusId, createCorpusKey(corpus), corpus);
+		return corpus;
+	}
+
+	private static boolean isPersistent(LanguageResource languageResource) {
+		return languageResource.getDataStore() != null && languageResource.getLRPersistenceId() != null;
+	}
+
+	/**
+	 * @return the key of a datastore corpus or a new key for each instance of a
+	 *         transient corpus, so a corpus with the name of an unloaded one
+	 *         does not get its entries
+	 */
+	private static String createCorpusKey(Corpus corpus) {
+		if (isPersistent(corpus)) {
+			return corpus.getDataStore().getStorageUrl() + "#" + corpus.getLRPersistenceId();
 		}
+		return corpus.getName() + "#" + UUID.randomUUID();
 	}
 
 	public void clear() {
-		indexMap.clear();
-		corpusNameMap.clear();
+		if (client != null) {
+			client.clear();
+		} else {
+			entries.clear();
+			snapshots.clear();
+		}
+		bloomFilter.clear();
+		FrontCache<CacheResult> frontCache = this.frontCache;
+		if (frontCache != null) {
+			frontCache.clear();
+		}
+		uncommitted = true;
+	}
+
+	/**
+	 * Keeps data extracted from the cached document with a result of the front
+	 * cache (dropped, if the result is not cached anymore).
+	 */
+	public void attachPayload(byte[] key, CacheResult result, Object payload) {
+		FrontCache<CacheResult> frontCache = this.frontCache;
+		if (frontCache != null && frontCache.get(key) == result) {
+			result.payload = payload;
+		}
+	}
+
+	/**
+	 * Removes all entries of transient corpora (and the snapshots of their
+	 * hashes) in the background and retires their ids afterwards (so
+	 * interrupted purges are repeated on reopening).
+	 * 
+	 * @param purgedCorpusIds
+	 *            the ids of the corpora by corpus key
+	 */
+	void purgeEntries(Map<String, Integer> purgedCorpusIds) {
+		// entries of a client expire on the server
+		if (maintenanceExecutor.isShutdown() || client != null) {
+			return;
+		}
+		Set<Integer> corpusIdSet = new HashSet<>(purgedCorpusIds.values());
+		maintenanceExecutor.execute(() -> {
+			Iterator<Map.Entry<byte[], byte[]>> iterator = entries.entrySet().iterator();
+			while (iterator.hasNext() && !mapdb.isClosed()) {
+				Map.Entry<byte[], byte[]> entry = iterator.next();
+				if (corpusIdSet.contains(ByteBuffer.wrap(entry.getValue()).getInt())) {
+					iterator.remove();
+					// snapshots carry no corpus id
+					snapshots.remove(entry.getKey());
+					uncommitted = true;
+				}
+			}
+			if (!mapdb.isClosed()) {
+				corpusIds.keySet().removeAll(purgedCorpusIds.keySet());
+				uncommitted = true;
+			}
+		});
+	}
+
+	private void removeFrontEntries(Corpus corpus) {
+		FrontCache<CacheResult> frontCache = this.frontCache;
+		if (frontCache != null) {
+			frontCache.removeIf((result) -> result.corpus == corpus);
+		}
+	}
+
+	/**
+	 * Wraps a corpus for identity-based equality in hash maps.
+	 */
+	private static class CorpusInstance {
+
+		private final Corpus corpus;
+
+		private CorpusInstance(Corpus corpus) {
+			this.corpus = corpus;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(corpus);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof CorpusInstance && ((CorpusInstance) obj).corpus == corpus;
+		}
+
+	}
+
+	/**
+	 * A key, which is processed by the owner thread, while other lookups wait
+	 * until it is released.
+	 */
+	private static class Claim {
+
+		private final HashKey key;
+		private final Thread owner = Thread.currentThread();
+		private final long expires;
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		private Claim(HashKey key, long timeoutMillis) {
+			this.key = key;
+			this.expires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		}
+
+		private boolean isExpired() {
+			return System.nanoTime() - expires > 0;
+		}
+
 	}
 
 	public static class CacheResult {
 
 		private final Corpus corpus;
 		private final Integer index;
+		private final long contentLength;
+		private final long contentChecksum;
+		private volatile Object payload;
 
 		public CacheResult(Corpus corpus, Integer index) {
+			this(corpus, index, -1, 0);
+		}
+
+		public CacheResult(Corpus corpus, Integer index, long contentLength, long contentChecksum) {
 			this.corpus = corpus;
 			this.index = index;
+			this.contentLength = contentLength;
+			this.contentChecksum = contentChecksum;
 		}
 
 		public Corpus getCorpus() {
@@ -86,15 +932,95 @@ public class Cache {
 			return index;
 		}
 
+		/**
+		 * @return the content length of the cached document or -1, if the
+		 *         entry was written without content length and checksum
+		 */
+		public long getContentLength() {
+			return contentLength;
+		}
+
+		public long getContentChecksum() {
+			return contentChecksum;
+		}
+
+		/**
+		 * @return true, if length and checksum match the given content hash,
+		 *         false if they differ or are unknown
+		 */
+		public boolean matches(ContentHash contentHash) {
+			return contentLength >= 0 && contentLength == contentHash.getLength()
+					&& contentChecksum == contentHash.getChecksum();
+		}
+
+		/**
+		 * @return the data extracted from the cached document by a reader, kept
+		 *         as long as the result stays in the front cache
+		 */
+		public Object getPayload() {
+			return payload;
+		}
+
+
+	}
+
+	/**
+	 * Retries binding datastore corpora of a persistent cache, after datastores
+	 * were opened or corpora loaded.
+	 */
+	private static class CorpusReferenceListener implements CreoleListener {
+
+		private Cache cache;
+
+		private CorpusReferenceListener(Cache cache) {
+			this.cache = cache;
+		}
+
+		@Override
+		public void resourceLoaded(CreoleEvent e) {
+			if (e.getResource() instanceof Corpus) {
+				cache.unresolvedCorpusIds.clear();
+			}
+		}
+
+		@Override
+		public void resourceUnloaded(CreoleEvent e) {
+
+		}
+
+		@Override
+		public void datastoreOpened(CreoleEvent e) {
+			cache.unresolvedCorpusIds.clear();
+		}
+
+		@Override
+		public void datastoreCreated(CreoleEvent e) {
+
+		}
+
+		@Override
+		public void datastoreClosed(CreoleEvent e) {
+
+		}
+
+		@Override
+		public void resourceRenamed(Resource resource, String oldName, String newName) {
+
+		}
+
 	}
 
 	private static class CorpusUnloadListener implements CreoleListener {
 
 		private Corpus corpus;
+		private int corpusId;
+		private String corpusKey;
 		private Cache cache;
 
-		private CorpusUnloadListener(Corpus corpus, Cache cache) {
+		private CorpusUnloadListener(Corpus corpus, int corpusId, String corpusKey, Cache cache) {
 			this.corpus = corpus;
+			this.corpusId = corpusId;
+			this.corpusKey = corpusKey;
 			this.cache = cache;
 		}
 
@@ -106,7 +1032,12 @@ public class Cache {
 		@Override
 		public void resourceUnloaded(CreoleEvent e) {
 			if (e.getResource().equals(corpus)) {
-				cache.corpora.remove(corpus.getName());
+				cache.corpora.remove(corpusId, corpus);
+				cache.corpusInstanceIds.remove(new CorpusInstance(corpus));
+				cache.removeFrontEntries(corpus);
+				if (!isPersistent(corpus)) {
+					cache.purgeEntries(Collections.singletonMap(corpusKey, corpusId));
+				}
 				Gate.getCreoleRegister().removeCreoleListener(this);
 			}
 		}
@@ -128,9 +1059,36 @@ public class Cache {
 
 		@Override
 		public void resourceRenamed(Resource resource, String oldName, String newName) {
-			if (resource.equals(corpus) && !cache.corpora.get(newName).equals(resource)) {
-				throw new IllegalStateException("corpus renaming not supported by cache");
-			}
+
+		}
+
+	}
+
+	/**
+	 * The cache key of a document content with length and checksum.
+	 */
+	public static class ContentHash {
+
+		private final byte[] hash;
+		private final long length;
+		private final long checksum;
+
+		public ContentHash(byte[] hash, long length, long checksum) {
+			this.hash = hash;
+			this.length = length;
+			this.checksum = checksum;
+		}
+
+		public byte[] getHash() {
+			return hash;
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		public long getChecksum() {
+			return checksum;
 		}
 
 	}
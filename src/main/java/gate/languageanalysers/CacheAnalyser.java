@@ -1,6 +1,9 @@
 package gate.languageanalysers;
 
-import java.math.BigInteger;
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -17,20 +20,47 @@ import gate.creole.ResourceData;
 import gate.creole.ResourceInstantiationException;
 import gate.creole.metadata.CreoleParameter;
 import gate.creole.metadata.Optional;
+import gate.languageanalysers.Cache.ContentHash;
 
 public class CacheAnalyser extends AbstractLanguageAnalyser {
 	private static final long serialVersionUID = 6870246820429562465L;
 	private static Logger logger = Logger.getLogger(CacheAnalyser.class);
 
 	protected String cacheName;
+	protected URL cacheFile;
+	protected Integer frontCacheSize;
+	protected Long cacheMaxEntries;
+	protected Long cacheMaxBytes;
+	protected Long cacheTimeToLive;
+	protected Integer sharedCachePort;
 	protected String hashAlgorithm;
 
 	protected MessageDigest messageDigest;
+	protected MessageDigest checksumDigest;
 	protected Cache cache;
 
+	private final ContentDigester contentDigester = new ContentDigester();
+
 	protected void initCache() throws ResourceInstantiationException {
-		cache = Cache.getInstance(cacheName);
+		File file = null;
+		if (cacheFile != null) {
+			try {
+				file = new File(cacheFile.toURI());
+			} catch (URISyntaxException | IllegalArgumentException e) {
+				throw new ResourceInstantiationException("cache file is not a local file: " + cacheFile, e);
+			}
+		}
+		try {
+			cache = Cache.getInstance(cacheName, file, valueOf(cacheMaxEntries), valueOf(cacheMaxBytes),
+					valueOf(cacheTimeToLive), sharedCachePort != null ? sharedCachePort : 0);
+		} catch (IllegalStateException e) {
+			throw new ResourceInstantiationException(e);
+		}
+		if (frontCacheSize != null && frontCacheSize > 0) {
+			cache.setFrontCacheSize(frontCacheSize);
+		}
 		messageDigest = initMessageDigest();
+		checksumDigest = initChecksumDigest();
 	}
 
 	public Resource duplicate(DuplicationContext ctx) throws ResourceInstantiationException {
@@ -49,6 +79,7 @@ public class CacheAnalyser extends AbstractLanguageAnalyser {
 		duplicate.getFeatures().putAll(getFeatures());
 
 		duplicate.messageDigest = initMessageDigest();
+		duplicate.checksumDigest = initChecksumDigest();
 		duplicate.cache = cache;
 
 		resourceData.addInstantiation(duplicate);
@@ -57,6 +88,12 @@ public class CacheAnalyser extends AbstractLanguageAnalyser {
 
 	protected final MessageDigest initMessageDigest() throws ResourceInstantiationException {
 		if (hasValue(hashAlgorithm)) {
+			if (XxHash64Digest.ALGORITHM.equalsIgnoreCase(hashAlgorithm.trim())) {
+				return new XxHash64Digest();
+			}
+			if (Murmur3Digest.ALGORITHM.equalsIgnoreCase(hashAlgorithm.trim())) {
+				return new Murmur3Digest();
+			}
 			try {
 				return MessageDigest.getInstance(hashAlgorithm);
 			} catch (NoSuchAlgorithmException e) {
@@ -66,16 +103,44 @@ public class CacheAnalyser extends AbstractLanguageAnalyser {
 		return null;
 	}
 
-	protected String buildHash(Document document) {
+	/**
+	 * The checksum for the verification of hits is a 64 bit hash, which is
+	 * independent of the hash algorithm of the key.
+	 */
+	protected final MessageDigest initChecksumDigest() {
+		if (hasValue(hashAlgorithm)) {
+			if (XxHash64Digest.ALGORITHM.equalsIgnoreCase(hashAlgorithm.trim())) {
+				return new Murmur3Digest();
+			}
+			return new XxHash64Digest();
+		}
+		return null;
+	}
+
+	/**
+	 * @return the digest of the UTF-8 encoded content (or the complete encoded
+	 *         content without hash algorithm) with length and checksum
+	 */
+	protected ContentHash buildHash(Document document) {
+		long start = System.nanoTime();
+		try {
+			return buildContentHash(document);
+		} finally {
+			cache.getStatistics().hashed(System.nanoTime() - start);
+		}
+	}
+
+	private ContentHash buildContentHash(Document document) {
 		String content = document.getContent().toString();
-		if (messageDigest != null) {
-			messageDigest.update(content.getBytes());
-			byte[] hashBytes = messageDigest.digest();
-			messageDigest.reset();
-			String hashString = new BigInteger(1, hashBytes).toString(16);
-			return hashString;
+		if (messageDigest == null) {
+			return new ContentHash(content.getBytes(StandardCharsets.UTF_8), content.length(), 0);
+		}
+		contentDigester.update(content, messageDigest, checksumDigest);
+		long checksum = 0;
+		if (checksumDigest != null) {
+			checksum = Murmur3Digest.getLongLittleEndian(checksumDigest.digest(), 0);
 		}
-		return content;
+		return new ContentHash(messageDigest.digest(), content.length(), checksum);
 	}
 
 	public String getCacheName() {
@@ -87,12 +152,76 @@ public class CacheAnalyser extends AbstractLanguageAnalyser {
 		this.cacheName = cacheName;
 	}
 
+	public URL getCacheFile() {
+		return cacheFile;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "the file of a persistent cache, which is reopened after restarts (empty uses a temporary cache)")
+	public void setCacheFile(URL cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	private static long valueOf(Long value) {
+		return value != null ? value : 0;
+	}
+
+	public Long getCacheMaxEntries() {
+		return cacheMaxEntries;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "the maximum number of cache entries, least recently used entries are evicted (0 for unlimited, applied when the cache is created)", defaultValue = "0")
+	public void setCacheMaxEntries(Long cacheMaxEntries) {
+		this.cacheMaxEntries = cacheMaxEntries;
+	}
+
+	public Long getCacheMaxBytes() {
+		return cacheMaxBytes;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "the maximum size of the cache store on disk in bytes (0 for unlimited, applied when the cache is created)", defaultValue = "0")
+	public void setCacheMaxBytes(Long cacheMaxBytes) {
+		this.cacheMaxBytes = cacheMaxBytes;
+	}
+
+	public Long getCacheTimeToLive() {
+		return cacheTimeToLive;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "the time in seconds after which cache entries expire (0 for unlimited, applied when the cache is created)", defaultValue = "0")
+	public void setCacheTimeToLive(Long cacheTimeToLive) {
+		this.cacheTimeToLive = cacheTimeToLive;
+	}
+
+	public Integer getSharedCachePort() {
+		return sharedCachePort;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "share the cache with other processes on this host over a loopback port, the first process hosts the cache server with its file and limits (0 for a cache of this process only)", defaultValue = "0")
+	public void setSharedCachePort(Integer sharedCachePort) {
+		this.sharedCachePort = sharedCachePort;
+	}
+
+	public Integer getFrontCacheSize() {
+		return frontCacheSize;
+	}
+
+	@Optional
+	@CreoleParameter(comment = "the number of most recently hit entries kept on heap in front of the cache store (0 disables the front cache)", defaultValue = "0")
+	public void setFrontCacheSize(Integer frontCacheSize) {
+		this.frontCacheSize = frontCacheSize;
+	}
+
 	public String getHashAlgorithm() {
 		return hashAlgorithm;
 	}
 
 	@Optional
-	@CreoleParameter(comment = "the name of the hash function (need to be an instance from java.security.MessageDigest, empty uses complete document content)", defaultValue = "SHA-1")
+	@CreoleParameter(comment = "the name of the hash function (xxHash64, Murmur3-128 or an instance from java.security.MessageDigest, empty uses complete document content)", defaultValue = "SHA-1")
 	public void setHashAlgorithm(String hashAlgorithm) {
 		this.hashAlgorithm = hashAlgorithm;
 	}
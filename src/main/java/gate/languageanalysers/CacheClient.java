@@ -0,0 +1,176 @@
+package gate.languageanalysers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Client of the {@link CacheServer} of another process. While the server is not
+ * reachable, lookups miss and additions are dropped.
+ */
+class CacheClient implements Closeable {
+	private static Logger logger = Logger.getLogger(CacheClient.class);
+
+	private final int port;
+	private final Queue<Connection> connections = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean failing = new AtomicBoolean();
+	private volatile boolean closed = false;
+
+	CacheClient(int port) {
+		this.port = port;
+	}
+
+	public long size() {
+		return request(0L, (input, output) -> {
+			output.writeByte(CacheServer.SIZE);
+			output.flush();
+			return input.readLong();
+		});
+	}
+
+	public void clear() {
+		request(false, (input, output) -> {
+			output.writeByte(CacheServer.CLEAR);
+			output.flush();
+			return input.readBoolean();
+		});
+	}
+
+	/**
+	 * @return the id of the corpus key assigned by the server or -1, if the
+	 *         server is not reachable
+	 */
+	public int registerCorpus(String corpusKey, String corpusReference) {
+		return request(-1, (input, output) -> {
+			output.writeByte(CacheServer.REGISTER_CORPUS);
+			CacheServer.writeString(output, corpusKey);
+			CacheServer.writeString(output, corpusReference);
+			output.flush();
+			return input.readInt();
+		});
+	}
+
+	public String getCorpusReference(int corpusId) {
+		return request(null, (input, output) -> {
+			output.writeByte(CacheServer.GET_CORPUS_REFERENCE);
+			output.writeInt(corpusId);
+			output.flush();
+			return CacheServer.readString(input);
+		});
+	}
+
+	/**
+	 * @param operation
+	 *            {@link CacheServer#GET_ENTRY} or {@link CacheServer#GET_SNAPSHOT}
+	 */
+	public byte[] get(byte operation, byte[] key) {
+		return request(null, (input, output) -> {
+			output.writeByte(operation);
+			CacheServer.writeBytes(output, key);
+			output.flush();
+			return CacheServer.readBytes(input);
+		});
+	}
+
+	/**
+	 * @param operation
+	 *            {@link CacheServer#PUT_ENTRY} or {@link CacheServer#PUT_SNAPSHOT}
+	 */
+	public void put(byte operation, byte[] key, byte[] value) {
+		request(false, (input, output) -> {
+			output.writeByte(operation);
+			CacheServer.writeBytes(output, key);
+			CacheServer.writeBytes(output, value);
+			output.flush();
+			return input.readBoolean();
+		});
+	}
+
+	private <R> R request(R failed, Request<R> request) {
+		Connection connection = connections.poll();
+		try {
+			if (connection == null) {
+				connection = new Connection(port);
+			}
+			R result = request.execute(connection.input, connection.output);
+			if (closed) {
+				connection.close();
+			} else {
+				connections.add(connection);
+			}
+			if (failing.get() && failing.compareAndSet(true, false)) {
+				logger.info("cache server on port " + port + " reachable again");
+			}
+			return result;
+		} catch (IOException e) {
+			if (connection != null) {
+				connection.close();
+			}
+			if (failing.compareAndSet(false, true)) {
+				logger.warn("cache server on port " + port + " not reachable, lookups miss until it is reachable again",
+						e);
+			}
+			return failed;
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		Connection connection;
+		while ((connection = connections.poll()) != null) {
+			connection.close();
+		}
+	}
+
+	private interface Request<R> {
+
+		R execute(DataInputStream input, DataOutputStream output) throws IOException;
+
+	}
+
+	private static class Connection {
+
+		private final Socket socket;
+		private final DataInputStream input;
+		private final DataOutputStream output;
+
+		private Connection(int port) throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			try {
+				socket.setTcpNoDelay(true);
+				input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				output.writeInt(CacheServer.MAGIC);
+				CacheServer.writeBytes(output, CacheServer.readToken(port));
+				output.flush();
+				if (input.readInt() != CacheServer.MAGIC) {
+					throw new IOException("no cache server on port " + port);
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		private void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+
+	}
+
+}
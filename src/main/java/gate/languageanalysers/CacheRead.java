@@ -1,45 +1,254 @@
 package gate.languageanalysers;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import gate.AnnotationSet;
 import gate.Corpus;
+import gate.DataStore;
 import gate.Document;
 import gate.Factory;
+import gate.controllers.CorpusAccess;
+import gate.controllers.DocumentCompletionAware;
 import gate.creole.ExecutionException;
+import gate.creole.metadata.CreoleParameter;
+import gate.creole.metadata.Optional;
+import gate.creole.metadata.RunTime;
 import gate.languageanalysers.Cache.CacheResult;
+import gate.languageanalysers.Cache.ContentHash;
 
-public abstract class CacheRead extends CacheAnalyser {
+public abstract class CacheRead extends CacheAnalyser implements DocumentCompletionAware {
 	private static final long serialVersionUID = 8779736540972451396L;
 
 	protected Set<Object> featureKeys;
+	protected Boolean frontCachePayloads;
+	protected ContentVerification contentVerification;
+	protected Integer parallelCopyThreshold;
+	protected Integer concurrentDuplicateTimeout;
 
 	@Override
 	public void execute() throws ExecutionException {
-		String hash = buildHash(document);
-		CacheResult result = cache.get(hash);
-		if (result != null) {
+		execute(buildHash(document));
+	}
+
+	protected void execute(ContentHash contentHash) throws ExecutionException {
+		execute(contentHash, lookup(contentHash.getHash()));
+	}
+
+	/**
+	 * Looks up the hash, waiting for a concurrently processed document with the
+	 * same content, if enabled.
+	 */
+	protected CacheResult lookup(byte[] hash) {
+		if (isWaitingForConcurrentDuplicates()) {
+			return cache.getOrClaim(hash, concurrentDuplicateTimeout);
+		}
+		return cache.get(hash);
+	}
+
+	protected boolean isWaitingForConcurrentDuplicates() {
+		return concurrentDuplicateTimeout != null && concurrentDuplicateTimeout > 0;
+	}
+
+	/**
+	 * Releases the claim of a missed document, which was not added by a
+	 * CacheWrite (e.g. since processing failed), so lookups of the same content
+	 * do not wait for the timeout.
+	 */
+	@Override
+	public void documentCompleted(Document document) {
+		if (cache != null && isWaitingForConcurrentDuplicates()) {
+			cache.releaseOwnClaim();
+		}
+	}
+
+	protected void execute(ContentHash contentHash, CacheResult result) throws ExecutionException {
+		byte[] hash = contentHash.getHash();
+		CacheStatistics statistics = cache.getStatistics();
+		if (result == null) {
+			statistics.missed();
+		} else {
+			ContentVerification verification = getVerification();
+			if (verification == ContentVerification.HASH && result.getContentLength() >= 0) {
+				if (!result.matches(contentHash)) {
+					statistics.mismatched();
+					return;
+				}
+				verification = ContentVerification.NONE;
+			}
+			// without length and checksum in the entry, hash verification compares
+			// the content
+			boolean compareContent = verification != ContentVerification.NONE;
+			Object payload = result.getPayload();
+			if (payload instanceof Payload && !compareContent) {
+				Payload frontPayload = (Payload) payload;
+				if (frontPayload.isCachedDocument(document)) {
+					statistics.selfHit();
+					return;
+				}
+				long start = System.nanoTime();
+				if (applyPayload(frontPayload.data, document)) {
+					statistics.hit(System.nanoTime() - start);
+					return;
+				}
+			}
 			Corpus cloneCorpus = result.getCorpus();
 			Integer cloneIndex = result.getIndex();
-			synchronized (cloneCorpus) {
+			CorpusAccess.getInstance(cloneCorpus).access(cloneIndex, () -> {
 				int documentIndex = cloneCorpus.indexOf(document);
 				if (documentIndex == cloneIndex) {
-					return;
+					statistics.selfHit();
+					return null;
 				}
 				boolean unloadClone = !cloneCorpus.isDocumentLoaded(cloneIndex);
 				Document cloneDocument = cloneCorpus.get(cloneIndex);
-				if (document.getContent().toString().contentEquals(cloneDocument.getContent().toString())) {
+				if (!compareContent
+						|| document.getContent().toString().contentEquals(cloneDocument.getContent().toString())) {
+					long start = System.nanoTime();
 					applyCache(cloneDocument, document);
+					statistics.hit(System.nanoTime() - start);
+				} else {
+					statistics.mismatched();
+				}
+				if (frontCachePayloads != null && frontCachePayloads && !compareContent && payload == null) {
+					Object data = extractPayload(cloneDocument, contentHash);
+					if (data != null) {
+						cache.attachPayload(hash, result, new Payload(data, cloneDocument));
+					}
 				}
 				if (unloadClone) {
 					Factory.deleteResource(cloneDocument);
 				}
-			}
+				return null;
+			});
 		}
 	}
 
+	protected ContentVerification getVerification() {
+		return contentVerification != null ? contentVerification : ContentVerification.HASH;
+	}
+
+	public ContentVerification getContentVerification() {
+		return contentVerification;
+	}
+
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "the verification of cache hits: NONE trusts the hash, HASH compares content length and an independent checksum, FULL compares the complete content", defaultValue = "HASH")
+	public void setContentVerification(ContentVerification contentVerification) {
+		this.contentVerification = contentVerification;
+	}
+
+	public Boolean getFrontCachePayloads() {
+		return frontCachePayloads;
+	}
+
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "keep the data copied from cached documents with their entry in the front cache, so further hits do not access the cached document", defaultValue = "false")
+	public void setFrontCachePayloads(Boolean frontCachePayloads) {
+		this.frontCachePayloads = frontCachePayloads;
+	}
+
 	protected abstract void applyCache(Document fromDocument, Document toDocument);
 
+	/**
+	 * @return the data of a cached document applied by
+	 *         {@link #applyPayload(Object, Document)} on further hits or null, if
+	 *         the reader does not support payloads
+	 */
+	protected Object extractPayload(Document cloneDocument, ContentHash contentHash) {
+		return null;
+	}
+
+	/**
+	 * @return false, if the payload is not applicable by this reader
+	 */
+	protected boolean applyPayload(Object data, Document toDocument) {
+		return false;
+	}
+
+	/**
+	 * @return true, if the annotation sets should be copied concurrently: more
+	 *         than one set and at least the threshold of annotations
+	 */
+	protected boolean isParallelCopy(Document fromDocument, List<String> annotationSetNames) {
+		if (parallelCopyThreshold == null || parallelCopyThreshold <= 0 || annotationSetNames.size() < 2) {
+			return false;
+		}
+		long annotations = 0;
+		for (String annotationSetName : annotationSetNames) {
+			annotations += getAnnotationSet(fromDocument, annotationSetName).size();
+		}
+		return annotations >= parallelCopyThreshold;
+	}
+
+	protected static AnnotationSet getAnnotationSet(Document document, String annotationSetName) {
+		return annotationSetName.isEmpty() ? document.getAnnotations() : document.getAnnotations(annotationSetName);
+	}
+
+	/**
+	 * Runs the copy tasks of independent annotation sets, all tasks are finished
+	 * before the first exception is thrown.
+	 */
+	protected static void runCopyTasks(List<Runnable> copyTasks, boolean parallel) {
+		if (!parallel || copyTasks.size() < 2) {
+			for (Runnable copyTask : copyTasks) {
+				copyTask.run();
+			}
+			return;
+		}
+		List<ForkJoinTask<?>> forkedTasks = new ArrayList<>(copyTasks.size() - 1);
+		for (int i = 1; i < copyTasks.size(); i++) {
+			forkedTasks.add(ForkJoinPool.commonPool().submit(copyTasks.get(i)));
+		}
+		RuntimeException exception = null;
+		try {
+			copyTasks.get(0).run();
+		} catch (RuntimeException e) {
+			exception = e;
+		}
+		for (ForkJoinTask<?> forkedTask : forkedTasks) {
+			try {
+				forkedTask.join();
+			} catch (RuntimeException e) {
+				if (exception == null) {
+					exception = e;
+				}
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	public Integer getParallelCopyThreshold() {
+		return parallelCopyThreshold;
+	}
+
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "the minimum number of annotations of a cached document to add its annotation sets in parallel, used by CacheReadAndAdd (0 disables parallel adding)", defaultValue = "0")
+	public void setParallelCopyThreshold(Integer parallelCopyThreshold) {
+		this.parallelCopyThreshold = parallelCopyThreshold;
+	}
+
+	public Integer getConcurrentDuplicateTimeout() {
+		return concurrentDuplicateTimeout;
+	}
+
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "wait up to n milliseconds for a document with the same content, which is processed concurrently, and use its result instead of processing the content twice (0 disables waiting)", defaultValue = "0")
+	public void setConcurrentDuplicateTimeout(Integer concurrentDuplicateTimeout) {
+		this.concurrentDuplicateTimeout = concurrentDuplicateTimeout;
+	}
+
 	protected void copyFeatures(Document fromDocument, Document toDocument) {
 		if (!fromDocument.getFeatures().isEmpty()) {
 
@@ -56,4 +265,29 @@ public abstract class CacheRead extends CacheAnalyser {
 		}
 	}
 
+	/**
+	 * Payload of a front cache result, which identifies the cached document
+	 * without loading it, to detect hits of the cached document itself.
+	 */
+	private static class Payload {
+
+		private final Object data;
+		private final WeakReference<Document> cachedDocument;
+		private final DataStore dataStore;
+		private final Object persistenceId;
+
+		private Payload(Object data, Document cachedDocument) {
+			this.data = data;
+			this.cachedDocument = new WeakReference<>(cachedDocument);
+			this.dataStore = cachedDocument.getDataStore();
+			this.persistenceId = cachedDocument.getLRPersistenceId();
+		}
+
+		private boolean isCachedDocument(Document document) {
+			return document == cachedDocument.get() || (persistenceId != null && dataStore == document.getDataStore()
+					&& persistenceId.equals(document.getLRPersistenceId()));
+		}
+
+	}
+
 }
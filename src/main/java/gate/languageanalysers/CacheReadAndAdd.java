@@ -1,10 +1,13 @@
 package gate.languageanalysers;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 
 import gate.Annotation;
+import gate.AnnotationSet;
 import gate.Document;
 import gate.Resource;
 import gate.creole.CustomDuplication;
@@ -12,6 +15,7 @@ import gate.creole.ResourceInstantiationException;
 import gate.creole.metadata.CreoleParameter;
 import gate.creole.metadata.CreoleResource;
 import gate.relations.Relation;
+import gate.relations.RelationSet;
 
 @CreoleResource(name = "CacheReadAndAdd", comment = "Read part for cache, if document with same content was already processed and in case annotations, relations and features added")
 public class CacheReadAndAdd extends CacheRead implements CustomDuplication {
@@ -26,49 +30,111 @@ public class CacheReadAndAdd extends CacheRead implements CustomDuplication {
 
 	@Override
 	protected void applyCache(Document fromDocument, Document toDocument) {
-		for (Annotation annotation : fromDocument.getAnnotations()) {
-			if (toDocument.getAnnotations().get(annotation.getId()) != null) {
-				alreadyPresentException("annotation", annotation.getId(), "default");
+		List<String> names = new ArrayList<>();
+		names.add("");
+		for (String annotationSetName : fromDocument.getAnnotationSetNames()) {
+			if (annotationSetName.length() > 0) {
+				names.add(annotationSetName);
 			}
 		}
-		for (Relation relation : fromDocument.getAnnotations().getRelations()) {
-			if (toDocument.getAnnotations().getRelations().get(relation.getId()) != null) {
-				alreadyPresentException("relation", relation.getId(), "default");
+		boolean parallel = isParallelCopy(fromDocument, names);
+
+		List<AnnotationSetAdd> addTasks = new ArrayList<>(names.size());
+		for (String annotationSetName : names) {
+			// named sets are created on the calling thread
+			addTasks.add(new AnnotationSetAdd(getAnnotationSet(fromDocument, annotationSetName),
+					getAnnotationSet(toDocument, annotationSetName),
+					annotationSetName.isEmpty() ? "default" : annotationSetName));
+		}
+		try {
+			runCopyTasks(new ArrayList<>(addTasks), parallel);
+		} catch (RuntimeException e) {
+			for (AnnotationSetAdd addTask : addTasks) {
+				addTask.rollback();
 			}
+			throw e;
 		}
-		for (String annotationSetName : fromDocument.getAnnotationSetNames()) {
-			for (Annotation annotation : fromDocument.getAnnotations(annotationSetName)) {
-				if (toDocument.getAnnotations(annotationSetName).get(annotation.getId()) != null) {
-					alreadyPresentException("annotation", annotation.getId(), annotationSetName);
+
+		copyFeatures(fromDocument, toDocument);
+	}
+
+	/**
+	 * Adds the annotations and relations of a set in one pass, which can be
+	 * rolled back on an id conflict.
+	 */
+	private static class AnnotationSetAdd implements Runnable {
+
+		private final AnnotationSet fromAnnotationSet;
+		private final AnnotationSet toAnnotationSet;
+		private final String setName;
+
+		private final List<Annotation> addedAnnotations = new ArrayList<>();
+		private final List<Relation> addedRelations = new ArrayList<>();
+
+		private AnnotationSetAdd(AnnotationSet fromAnnotationSet, AnnotationSet toAnnotationSet, String setName) {
+			this.fromAnnotationSet = fromAnnotationSet;
+			this.toAnnotationSet = toAnnotationSet;
+			this.setName = setName;
+		}
+
+		@Override
+		public void run() {
+			if (fromAnnotationSet.isEmpty()) {
+				return;
+			}
+			RelationSet fromRelations = fromAnnotationSet.getRelations();
+			RelationSet toRelations = toAnnotationSet.getRelations();
+
+			// annotations and relations share the id counter of the document
+			int minId = Integer.MAX_VALUE;
+			int maxId = Integer.MIN_VALUE;
+			for (Annotation annotation : toAnnotationSet) {
+				minId = Math.min(minId, annotation.getId());
+				maxId = Math.max(maxId, annotation.getId());
+			}
+			if (!toRelations.isEmpty()) {
+				for (Relation relation : toRelations) {
+					minId = Math.min(minId, relation.getId());
+					maxId = Math.max(maxId, relation.getId());
 				}
 			}
-			for (Relation relation : fromDocument.getAnnotations(annotationSetName).getRelations()) {
-				if (toDocument.getAnnotations(annotationSetName).getRelations().get(relation.getId()) != null) {
-					alreadyPresentException("relation", relation.getId(), annotationSetName);
+
+			for (Annotation annotation : fromAnnotationSet) {
+				int id = annotation.getId();
+				if (id >= minId && id <= maxId && toAnnotationSet.get(id) != null) {
+					alreadyPresentException("annotation", id, setName);
+				}
+				toAnnotationSet.add(annotation);
+				addedAnnotations.add(annotation);
+			}
+			if (!fromRelations.isEmpty()) {
+				for (Relation relation : fromRelations) {
+					int id = relation.getId();
+					if (id >= minId && id <= maxId && toRelations.get(id) != null) {
+						alreadyPresentException("relation", id, setName);
+					}
+					toRelations.add(relation);
+					addedRelations.add(relation);
 				}
 			}
 		}
 
-		for (Annotation annotation : fromDocument.getAnnotations()) {
-			toDocument.getAnnotations().add(annotation);
-		}
-		for (Relation relation : fromDocument.getAnnotations().getRelations()) {
-			toDocument.getAnnotations().getRelations().add(relation);
-		}
-		for (String annotationSetName : fromDocument.getAnnotationSetNames()) {
-			for (Annotation annotation : fromDocument.getAnnotations(annotationSetName)) {
-				toDocument.getAnnotations(annotationSetName).add(annotation);
+		private void rollback() {
+			for (Relation relation : addedRelations) {
+				toAnnotationSet.getRelations().deleteRelation(relation);
 			}
-			for (Relation relation : fromDocument.getAnnotations(annotationSetName).getRelations()) {
-				toDocument.getAnnotations(annotationSetName).getRelations().add(relation);
+			addedRelations.clear();
+			for (Annotation annotation : addedAnnotations) {
+				toAnnotationSet.remove(annotation);
 			}
+			addedAnnotations.clear();
 		}
 
-		copyFeatures(fromDocument, toDocument);
 	}
 
-	private void alreadyPresentException(String type, Integer id, String setName) {
-		throw new IllegalStateException(String.format("%s id %d already present in annotation set", type, id, setName));
+	private static void alreadyPresentException(String type, Integer id, String setName) {
+		throw new IllegalStateException(
+				String.format("%s id %d already present in annotation set %s", type, id, setName));
 	}
 
 	public Set<Object> getFeatureKeys() {
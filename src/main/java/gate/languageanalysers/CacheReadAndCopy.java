@@ -1,6 +1,7 @@
 package gate.languageanalysers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,11 +12,20 @@ import org.apache.log4j.Logger;
 import gate.Annotation;
 import gate.AnnotationSet;
 import gate.Document;
+import gate.Factory;
+import gate.FeatureMap;
+import gate.Node;
 import gate.Resource;
+import gate.controllers.CorpusAccess;
 import gate.creole.CustomDuplication;
+import gate.creole.ExecutionException;
 import gate.creole.ResourceInstantiationException;
 import gate.creole.metadata.CreoleParameter;
 import gate.creole.metadata.CreoleResource;
+import gate.creole.metadata.Optional;
+import gate.creole.metadata.RunTime;
+import gate.languageanalysers.Cache.CacheResult;
+import gate.languageanalysers.Cache.ContentHash;
 import gate.relations.Relation;
 import gate.relations.RelationSet;
 import gate.util.GateRuntimeException;
@@ -28,6 +38,8 @@ public class CacheReadAndCopy extends CacheRead implements CustomDuplication {
 
 	private Set<String> annotationSetNames;
 	private Set<String> relationSetNames;
+	private Boolean snapshots;
+	private Boolean bulkCopy;
 
 	@Override
 	public Resource init() throws ResourceInstantiationException {
@@ -36,20 +48,50 @@ public class CacheReadAndCopy extends CacheRead implements CustomDuplication {
 	}
 
 	@Override
-	protected void applyCache(Document fromDocument, Document toDocument) {
-		Map<Integer, Integer> annotationMapping = new HashMap<>();
-		if ((annotationSetNames == null || annotationSetNames.contains(""))
-				&& !fromDocument.getAnnotations().isEmpty()) {
-			for (Annotation annotation : fromDocument.getAnnotations()) {
-				annotationMapping.put(annotation.getId(), copyAnnotation(toDocument.getAnnotations(), annotation));
+	public void execute() throws ExecutionException {
+		ContentHash contentHash = buildHash(document);
+		ContentVerification verification = getVerification();
+		CacheResult result = null;
+		boolean lookedUp = false;
+		// snapshots are not used for full verification, which needs the cached document
+		if (snapshots != null && snapshots && verification != ContentVerification.FULL) {
+			byte[] snapshot = cache.getSnapshot(contentHash.getHash());
+			if (snapshot == null && isWaitingForConcurrentDuplicates()) {
+				// the snapshot is added before the entry, which releases waiting lookups
+				result = lookup(contentHash.getHash());
+				lookedUp = true;
+				snapshot = result != null ? cache.getSnapshot(contentHash.getHash()) : null;
 			}
-			if ((relationSetNames == null || relationSetNames.contains(""))
-					&& !fromDocument.getAnnotations().getRelations().isEmpty()) {
-				for (Relation relation : fromDocument.getAnnotations().getRelations()) {
-					copyRelation(toDocument.getAnnotations().getRelations(), relation, annotationMapping);
+			if (snapshot != null && AnnotationSnapshot.isApplicable(snapshot, contentHash,
+					verification == ContentVerification.HASH)) {
+				if (isCachedDocument(contentHash.getHash())) {
+					cache.getStatistics().selfHit();
+				} else {
+					long start = System.nanoTime();
+					AnnotationSnapshot.apply(snapshot, document, annotationSetNames, relationSetNames, featureKeys);
+					cache.getStatistics().hit(System.nanoTime() - start);
 				}
+				return;
 			}
 		}
+		execute(contentHash, lookedUp ? result : lookup(contentHash.getHash()));
+	}
+
+	/**
+	 * @return true, if the document itself is the cached document
+	 */
+	private boolean isCachedDocument(byte[] hash) {
+		CacheResult result = cache.get(hash);
+		return result != null && result.getCorpus() == corpus
+				&& result.getIndex() == CorpusAccess.getInstance(corpus).indexOf(document);
+	}
+
+	@Override
+	protected void applyCache(Document fromDocument, Document toDocument) {
+		List<String> names = new ArrayList<>();
+		if (annotationSetNames == null || annotationSetNames.contains("")) {
+			names.add("");
+		}
 		for (String annotationSetName : fromDocument.getAnnotationSetNames()) {
 			if (annotationSetName.length() == 0) {
 				continue;
@@ -57,24 +99,131 @@ public class CacheReadAndCopy extends CacheRead implements CustomDuplication {
 			if (annotationSetNames != null && !annotationSetNames.contains(annotationSetName)) {
 				continue;
 			}
-			annotationMapping.clear();
-			if (!fromDocument.getAnnotations(annotationSetName).isEmpty()) {
-				for (Annotation annotation : fromDocument.getAnnotations(annotationSetName)) {
-					annotationMapping.put(annotation.getId(),
-							copyAnnotation(toDocument.getAnnotations(annotationSetName), annotation));
-				}
+			names.add(annotationSetName);
+		}
+
+		boolean bulk = bulkCopy != null && bulkCopy;
+		for (String annotationSetName : names) {
+			copyAnnotationSet(getAnnotationSet(fromDocument, annotationSetName), toDocument, annotationSetName,
+					isRelationSetCopied(annotationSetName), bulk);
+		}
+
+		copyFeatures(fromDocument, toDocument);
+	}
+
+	/**
+	 * @return a snapshot of all annotation sets, relations and features (so
+	 *         readers with other selections can share it) or null, if it cannot
+	 *         be written
+	 */
+	@Override
+	protected Object extractPayload(Document cloneDocument, ContentHash contentHash) {
+		return AnnotationSnapshot.write(cloneDocument, contentHash, null, null, null);
+	}
+
+	@Override
+	protected boolean applyPayload(Object data, Document toDocument) {
+		AnnotationSnapshot.apply((byte[]) data, toDocument, annotationSetNames, relationSetNames, featureKeys);
+		return true;
+	}
+
+	private boolean isRelationSetCopied(String annotationSetName) {
+		return relationSetNames == null || relationSetNames.contains(annotationSetName);
+	}
+
+	private void copyAnnotationSet(AnnotationSet fromAnnotationSet, Document toDocument, String annotationSetName,
+			boolean copyRelations, boolean bulk) {
+		if (fromAnnotationSet.isEmpty()) {
+			return;
+		}
+		AnnotationSet toAnnotationSet = annotationSetName.isEmpty() ? toDocument.getAnnotations()
+				: toDocument.getAnnotations(annotationSetName);
+		if (bulk) {
+			bulkCopyAnnotationSet(fromAnnotationSet, toAnnotationSet, copyRelations);
+			return;
+		}
+		Map<Integer, Integer> annotationMapping = new HashMap<>();
+		for (Annotation annotation : fromAnnotationSet) {
+			annotationMapping.put(annotation.getId(), copyAnnotation(toAnnotationSet, annotation));
+		}
+		if (copyRelations && !fromAnnotationSet.getRelations().isEmpty()) {
+			for (Relation relation : fromAnnotationSet.getRelations()) {
+				copyRelation(toAnnotationSet.getRelations(), relation, annotationMapping);
 			}
-			if (relationSetNames != null && !relationSetNames.contains(annotationSetName)) {
-				continue;
+		}
+	}
+
+	/**
+	 * Copies an annotation set reusing the nodes created for the source nodes.
+	 */
+	public static final void bulkCopyAnnotationSet(AnnotationSet fromAnnotationSet, AnnotationSet toAnnotationSet,
+			boolean copyRelations) {
+		IntIntMap annotationMapping = new IntIntMap(fromAnnotationSet.size());
+		Node[] nodes = new Node[fromAnnotationSet.size() * 2];
+		for (Annotation annotation : fromAnnotationSet) {
+			Node fromStart = annotation.getStartNode();
+			Node fromEnd = annotation.getEndNode();
+			nodes = ensureCapacity(nodes, Math.max(fromStart.getId(), fromEnd.getId()));
+			Node toStart = nodes[fromStart.getId()];
+			Node toEnd = nodes[fromEnd.getId()];
+			FeatureMap features = copyFeatureMap(annotation.getFeatures());
+			Integer id;
+			if (toStart != null && toEnd != null) {
+				id = toAnnotationSet.add(toStart, toEnd, annotation.getType(), features);
+			} else {
+				try {
+					id = toAnnotationSet.add(fromStart.getOffset(), fromEnd.getOffset(), annotation.getType(),
+							features);
+				} catch (InvalidOffsetException e) {
+					throw new GateRuntimeException(e);
+				}
+				Annotation copy = toAnnotationSet.get(id);
+				nodes[fromStart.getId()] = copy.getStartNode();
+				nodes[fromEnd.getId()] = copy.getEndNode();
 			}
-			if (!fromDocument.getAnnotations(annotationSetName).getRelations().isEmpty()) {
-				for (Relation relation : fromDocument.getAnnotations(annotationSetName).getRelations()) {
-					copyRelation(toDocument.getAnnotations().getRelations(), relation, annotationMapping);
+			annotationMapping.put(annotation.getId(), id);
+		}
+		if (copyRelations && !fromAnnotationSet.getRelations().isEmpty()) {
+			RelationSet toRelations = toAnnotationSet.getRelations();
+			for (Relation relation : fromAnnotationSet.getRelations()) {
+				int[] members = relation.getMembers().clone();
+				if (mapMembers(members, annotationMapping)) {
+					toRelations.addRelation(relation.getType(), members);
 				}
 			}
 		}
+	}
 
-		copyFeatures(fromDocument, toDocument);
+	/**
+	 * Maps the members of a relation to the ids of the copied annotations.
+	 * 
+	 * @return false, if a member was not copied (e.g. an annotation of another
+	 *         set)
+	 */
+	static boolean mapMembers(int[] members, IntIntMap annotationMapping) {
+		for (int i = 0; i < members.length; i++) {
+			int id = annotationMapping.get(members[i], -1);
+			if (id < 0) {
+				return false;
+			}
+			members[i] = id;
+		}
+		return true;
+	}
+
+	private static Node[] ensureCapacity(Node[] nodes, int id) {
+		if (id < nodes.length) {
+			return nodes;
+		}
+		return Arrays.copyOf(nodes, Math.max(id + 1, nodes.length * 2));
+	}
+
+	private static FeatureMap copyFeatureMap(FeatureMap features) {
+		FeatureMap copy = Factory.newFeatureMap();
+		if (features != null && !features.isEmpty()) {
+			copy.putAll(features);
+		}
+		return copy;
 	}
 
 	public static final Integer copyAnnotation(AnnotationSet annotationSet, Annotation annotation) {
@@ -86,13 +235,21 @@ public class CacheReadAndCopy extends CacheRead implements CustomDuplication {
 		}
 	}
 
+	/**
+	 * @return the id of the copy or null, if a member was not copied (e.g. an
+	 *         annotation of another set)
+	 */
 	public static final Integer copyRelation(RelationSet relations, Relation relation,
 			Map<Integer, Integer> annotationMapping) {
-		List<Integer> members = new ArrayList<>();
-		for (Integer annotationId : relation.getMembers()) {
-			members.add(annotationMapping.get(annotationId));
+		int[] members = relation.getMembers().clone();
+		for (int i = 0; i < members.length; i++) {
+			Integer id = annotationMapping.get(members[i]);
+			if (id == null) {
+				return null;
+			}
+			members[i] = id;
 		}
-		return relations.addRelation(relation.getType(), members.stream().mapToInt(i -> i).toArray()).getId();
+		return relations.addRelation(relation.getType(), members).getId();
 	}
 
 	public Set<String> getAnnotationSetNames() {
@@ -113,6 +270,28 @@ public class CacheReadAndCopy extends CacheRead implements CustomDuplication {
 		this.relationSetNames = relationSetNames;
 	}
 
+	public Boolean getBulkCopy() {
+		return bulkCopy;
+	}
+
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "copy annotations with reused nodes, copied feature maps and primitive id mapping", defaultValue = "false")
+	public void setBulkCopy(Boolean bulkCopy) {
+		this.bulkCopy = bulkCopy;
+	}
+
+	public Boolean getSnapshots() {
+		return snapshots;
+	}
+
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "apply snapshots stored by CacheWrite instead of loading the cached document (falls back to the cached document without snapshot)", defaultValue = "false")
+	public void setSnapshots(Boolean snapshots) {
+		this.snapshots = snapshots;
+	}
+
 	public Set<Object> getFeatureKeys() {
 		return featureKeys;
 	}
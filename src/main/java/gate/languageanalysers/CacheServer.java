@@ -0,0 +1,287 @@
+package gate.languageanalysers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Serves a cache to the caches of other processes of the same user on this
+ * host, which authenticate with the token written to an owner-only file. Runs
+ * as separate process with {@code CacheServer <port> [<file>]}.
+ */
+public class CacheServer implements Closeable {
+	private static Logger logger = Logger.getLogger(CacheServer.class);
+
+	static final int MAGIC = 0x47434332;
+	private static final int TOKEN_LENGTH = 32;
+
+	static final byte GET_ENTRY = 1;
+	static final byte PUT_ENTRY = 2;
+	static final byte GET_SNAPSHOT = 3;
+	static final byte PUT_SNAPSHOT = 4;
+	static final byte SIZE = 5;
+	static final byte CLEAR = 6;
+	static final byte REGISTER_CORPUS = 7;
+	static final byte GET_CORPUS_REFERENCE = 8;
+
+	private final Cache cache;
+	private final ServerSocket serverSocket;
+	private final File tokenFile;
+	private final byte[] token;
+	private final ExecutorService executor;
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @return the server socket bound to the loopback address or null, if the
+	 *         port is already bound (by the server of another process)
+	 */
+	static ServerSocket bind(int port) throws IOException {
+		ServerSocket serverSocket = new ServerSocket();
+		try {
+			serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+			return serverSocket;
+		} catch (BindException e) {
+			serverSocket.close();
+			return null;
+		}
+	}
+
+	CacheServer(Cache cache, ServerSocket serverSocket) throws IOException {
+		this.cache = cache;
+		this.serverSocket = serverSocket;
+		this.tokenFile = getTokenFile(serverSocket.getLocalPort());
+		this.token = writeToken(tokenFile);
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "cache-server-" + serverSocket.getLocalPort());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.execute(this::accept);
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	static File getTokenFile(int port) {
+		return new File(System.getProperty("user.home"), ".gate-cache-" + port + ".token");
+	}
+
+	static byte[] readToken(int port) throws IOException {
+		return Files.readAllBytes(getTokenFile(port).toPath());
+	}
+
+	/**
+	 * Replaces the token file atomically by a temporary file, which is created
+	 * readable by the owner only (on POSIX file systems).
+	 */
+	private static byte[] writeToken(File tokenFile) throws IOException {
+		byte[] token = new byte[TOKEN_LENGTH];
+		new SecureRandom().nextBytes(token);
+		Path temporaryFile = Files.createTempFile(tokenFile.getAbsoluteFile().getParentFile().toPath(),
+				tokenFile.getName(), ".tmp");
+		try {
+			File file = temporaryFile.toFile();
+			file.setReadable(false, false);
+			file.setReadable(true, true);
+			Files.write(temporaryFile, token);
+			Files.move(temporaryFile, tokenFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+		return token;
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				sockets.add(socket);
+				executor.execute(() -> serve(socket));
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					logger.warn("failed to accept cache client", e);
+				}
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try (Socket closedSocket = socket;
+				DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				DataOutputStream output = new DataOutputStream(
+						new BufferedOutputStream(socket.getOutputStream()))) {
+			if (!authenticate(input)) {
+				logger.warn("rejected cache client without valid token");
+				return;
+			}
+			output.writeInt(MAGIC);
+			output.flush();
+			while (true) {
+				byte operation;
+				try {
+					operation = input.readByte();
+				} catch (EOFException e) {
+					return;
+				}
+				handle(operation, input, output);
+				output.flush();
+			}
+		} catch (IOException | RuntimeException e) {
+			if (!serverSocket.isClosed()) {
+				logger.warn("cache client connection failed", e);
+			}
+		} finally {
+			sockets.remove(socket);
+		}
+	}
+
+	private boolean authenticate(DataInputStream input) throws IOException {
+		if (input.readInt() != MAGIC || input.readInt() != token.length) {
+			return false;
+		}
+		byte[] clientToken = new byte[token.length];
+		input.readFully(clientToken);
+		return MessageDigest.isEqual(token, clientToken);
+	}
+
+	private void handle(byte operation, DataInputStream input, DataOutputStream output) throws IOException {
+		switch (operation) {
+		case GET_ENTRY:
+			writeBytes(output, cache.getEntry(readBytes(input)));
+			break;
+		case PUT_ENTRY: {
+			byte[] key = readBytes(input);
+			cache.putEntry(key, readBytes(input));
+			output.writeBoolean(true);
+			break;
+		}
+		case GET_SNAPSHOT:
+			writeBytes(output, cache.getSnapshot(readBytes(input)));
+			break;
+		case PUT_SNAPSHOT: {
+			byte[] key = readBytes(input);
+			byte[] snapshot = readBytes(input);
+			// only snapshots of plain feature values are shared
+			boolean valid = key != null && snapshot != null && AnnotationSnapshot.isValid(snapshot);
+			if (valid) {
+				cache.addSnapshot(key, snapshot);
+			} else {
+				logger.warn("rejected invalid snapshot of cache client");
+			}
+			output.writeBoolean(valid);
+			break;
+		}
+		case SIZE:
+			output.writeLong(cache.getStatistics().getEntries());
+			break;
+		case CLEAR:
+			cache.clear();
+			output.writeBoolean(true);
+			break;
+		case REGISTER_CORPUS: {
+			String corpusKey = readString(input);
+			output.writeInt(cache.assignCorpusId(corpusKey, readString(input)));
+			break;
+		}
+		case GET_CORPUS_REFERENCE:
+			writeString(output, cache.getCorpusReference(input.readInt()));
+			break;
+		default:
+			throw new IOException("unknown cache operation " + operation);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			Files.deleteIfExists(tokenFile.toPath());
+		} catch (IOException e) {
+			logger.warn("failed to delete cache token file " + tokenFile, e);
+		}
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// already closed
+		}
+		for (Socket socket : sockets) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+		executor.shutdownNow();
+	}
+
+	static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			output.writeInt(-1);
+		} else {
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+	}
+
+	static byte[] readBytes(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return bytes;
+	}
+
+	static void writeString(DataOutputStream output, String string) throws IOException {
+		writeBytes(output, string != null ? string.getBytes(StandardCharsets.UTF_8) : null);
+	}
+
+	static String readString(DataInputStream input) throws IOException {
+		byte[] bytes = readBytes(input);
+		return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 1) {
+			logger.error("usage: CacheServer <port> [<file>]");
+			return;
+		}
+		int port = Integer.parseInt(args[0]);
+		File file = args.length > 1 ? new File(args[1]) : null;
+		Cache cache = Cache.getInstance("shared", file, 0, 0, 0, port);
+		if (!cache.isHostingServer()) {
+			logger.error("port " + port + " is already in use");
+			cache.close();
+			return;
+		}
+		logger.info("cache server listening on port " + port);
+		new CountDownLatch(1).await();
+	}
+
+}
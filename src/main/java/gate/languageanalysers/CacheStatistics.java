@@ -0,0 +1,184 @@
+package gate.languageanalysers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import gate.FeatureMap;
+
+/**
+ * Counters of a cache, registered as MBean
+ * {@code gate.languageanalysers:type=Cache,name=<cache name>}.
+ */
+public class CacheStatistics implements CacheStatisticsMBean {
+
+	public static final String FEATURE_PREFIX = "cache.";
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder mismatches = new LongAdder();
+	private final LongAdder selfHits = new LongAdder();
+	private final LongAdder adds = new LongAdder();
+	private final LongAdder hashNanos = new LongAdder();
+	private final LongAdder applyNanos = new LongAdder();
+	private final LongAdder waits = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final LongAdder waitTimeouts = new LongAdder();
+
+	private final LongSupplier entries;
+	private final LongSupplier bytesOnDisk;
+
+	CacheStatistics(LongSupplier entries, LongSupplier bytesOnDisk) {
+		this.entries = entries;
+		this.bytesOnDisk = bytesOnDisk;
+	}
+
+	public void hit(long applyNanos) {
+		hits.increment();
+		this.applyNanos.add(applyNanos);
+	}
+
+	public void missed() {
+		misses.increment();
+	}
+
+	/**
+	 * A hash collision or a content, which did not match the cached document.
+	 */
+	public void mismatched() {
+		mismatches.increment();
+	}
+
+	/**
+	 * The document itself is the cached document.
+	 */
+	public void selfHit() {
+		selfHits.increment();
+	}
+
+	public void added() {
+		adds.increment();
+	}
+
+	public void hashed(long nanos) {
+		hashNanos.add(nanos);
+	}
+
+	/**
+	 * A lookup waited for a document with the same content, which was processed
+	 * concurrently.
+	 */
+	public void waited(long nanos) {
+		waits.increment();
+		waitNanos.add(nanos);
+	}
+
+	public void waitTimedOut() {
+		waitTimeouts.increment();
+	}
+
+	@Override
+	public long getHits() {
+		return hits.sum();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@Override
+	public long getMismatches() {
+		return mismatches.sum();
+	}
+
+	@Override
+	public long getSelfHits() {
+		return selfHits.sum();
+	}
+
+	@Override
+	public long getAdds() {
+		return adds.sum();
+	}
+
+	@Override
+	public long getEntries() {
+		return entries.getAsLong();
+	}
+
+	@Override
+	public long getBytesOnDisk() {
+		return bytesOnDisk.getAsLong();
+	}
+
+	@Override
+	public long getHashMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(hashNanos.sum());
+	}
+
+	@Override
+	public long getApplyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(applyNanos.sum());
+	}
+
+	@Override
+	public long getWaits() {
+		return waits.sum();
+	}
+
+	@Override
+	public long getWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+	}
+
+	@Override
+	public long getWaitTimeouts() {
+		return waitTimeouts.sum();
+	}
+
+	@Override
+	public double getHitRatio() {
+		long hits = getHits();
+		long lookups = hits + getMisses() + getMismatches();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public void reset() {
+		hits.reset();
+		misses.reset();
+		mismatches.reset();
+		selfHits.reset();
+		adds.reset();
+		hashNanos.reset();
+		applyNanos.reset();
+		waits.reset();
+		waitNanos.reset();
+		waitTimeouts.reset();
+	}
+
+	public void publish(FeatureMap features) {
+		features.put(FEATURE_PREFIX + "hits", getHits());
+		features.put(FEATURE_PREFIX + "misses", getMisses());
+		features.put(FEATURE_PREFIX + "mismatches", getMismatches());
+		features.put(FEATURE_PREFIX + "selfHits", getSelfHits());
+		features.put(FEATURE_PREFIX + "adds", getAdds());
+		features.put(FEATURE_PREFIX + "entries", getEntries());
+		features.put(FEATURE_PREFIX + "bytesOnDisk", getBytesOnDisk());
+		features.put(FEATURE_PREFIX + "hashMillis", getHashMillis());
+		features.put(FEATURE_PREFIX + "applyMillis", getApplyMillis());
+		features.put(FEATURE_PREFIX + "waits", getWaits());
+		features.put(FEATURE_PREFIX + "waitMillis", getWaitMillis());
+		features.put(FEATURE_PREFIX + "waitTimeouts", getWaitTimeouts());
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + getHits() + ", misses=" + getMisses() + ", mismatches=" + getMismatches() + ", selfHits="
+				+ getSelfHits() + ", adds=" + getAdds() + ", entries=" + getEntries() + ", bytesOnDisk="
+				+ getBytesOnDisk() + ", hashMillis=" + getHashMillis() + ", applyMillis=" + getApplyMillis() + ", waits="
+				+ getWaits() + ", waitMillis=" + getWaitMillis() + ", waitTimeouts=" + getWaitTimeouts();
+	}
+
+}
@@ -0,0 +1,36 @@
+package gate.languageanalysers;
+
+/**
+ * JMX view of the statistics of a cache.
+ */
+public interface CacheStatisticsMBean {
+
+	long getHits();
+
+	long getMisses();
+
+	long getMismatches();
+
+	long getSelfHits();
+
+	long getAdds();
+
+	long getEntries();
+
+	long getBytesOnDisk();
+
+	long getHashMillis();
+
+	long getApplyMillis();
+
+	long getWaits();
+
+	long getWaitMillis();
+
+	long getWaitTimeouts();
+
+	double getHitRatio();
+
+	void reset();
+
+}
@@ -1,18 +1,30 @@
 package gate.languageanalysers;
 
+import java.util.Set;
+
 import org.apache.log4j.Logger;
 
 import gate.Resource;
+import gate.controllers.CorpusAccess;
 import gate.creole.CustomDuplication;
 import gate.creole.ExecutionException;
 import gate.creole.ResourceInstantiationException;
+import gate.creole.metadata.CreoleParameter;
 import gate.creole.metadata.CreoleResource;
+import gate.creole.metadata.Optional;
+import gate.creole.metadata.RunTime;
+import gate.languageanalysers.Cache.ContentHash;
 
 @CreoleResource(name = "CacheWrite", comment = "Write part for cache, adds document index based on content (hash) to cache")
 public class CacheWrite extends CacheAnalyser implements CustomDuplication {
 	private static final long serialVersionUID = -3752065726491150003L;
 	private static Logger logger = Logger.getLogger(CacheWrite.class);
 
+	private Boolean snapshots;
+	private Set<String> annotationSetNames;
+	private Set<String> relationSetNames;
+	private Set<Object> featureKeys;
+
 	@Override
 	public Resource init() throws ResourceInstantiationException {
 		initCache();
@@ -21,13 +33,62 @@ public class CacheWrite extends CacheAnalyser implements CustomDuplication {
 
 	@Override
 	public void execute() throws ExecutionException {
-		String hash = buildHash(document);
-		int index;
-		synchronized (corpus) {
-			index = corpus.indexOf(document);
+		ContentHash contentHash = buildHash(document);
+		int index = CorpusAccess.getInstance(corpus).indexOf(document);
+
+		if (snapshots != null && snapshots) {
+			byte[] snapshot = AnnotationSnapshot.write(document, contentHash, annotationSetNames, relationSetNames,
+					featureKeys);
+			// without snapshot, readers fall back to the cached document
+			if (snapshot != null) {
+				cache.addSnapshot(contentHash.getHash(), snapshot);
+			}
 		}
+		cache.add(corpus, index, contentHash);
+	}
+
+	public Boolean getSnapshots() {
+		return snapshots;
+	}
+
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "store a snapshot of annotations, relations and features, which is applied by CacheReadAndCopy without loading this document", defaultValue = "false")
+	public void setSnapshots(Boolean snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	public Set<String> getAnnotationSetNames() {
+		return annotationSetNames;
+	}
+
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "the names of annotation sets to store in the snapshot (empty means all)")
+	public void setAnnotationSetNames(Set<String> annotationSetNames) {
+		this.annotationSetNames = annotationSetNames;
+	}
+
+	public Set<String> getRelationSetNames() {
+		return relationSetNames;
+	}
+
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "the names of annotation sets to store relations from in the snapshot (empty means all)")
+	public void setRelationSetNames(Set<String> relationSetNames) {
+		this.relationSetNames = relationSetNames;
+	}
+
+	public Set<Object> getFeatureKeys() {
+		return featureKeys;
+	}
 
-		cache.add(corpus, index, hash);
+	@Optional
+	@RunTime
+	@CreoleParameter(comment = "the keys of features to store in the snapshot (empty means all)")
+	public void setFeatureKeys(Set<Object> featureKeys) {
+		this.featureKeys = featureKeys;
 	}
 
 }
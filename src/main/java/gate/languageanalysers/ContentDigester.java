@@ -0,0 +1,47 @@
+package gate.languageanalysers;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Feeds the UTF-8 encoding of a content chunk-wise into digests, so the content
+ * is never encoded as a whole. Not thread-safe.
+ */
+public class ContentDigester {
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+	/**
+	 * @param checksumDigest
+	 *            a second digest updated with the same bytes or null
+	 */
+	public void update(CharSequence content, MessageDigest digest, MessageDigest checksumDigest) {
+		CharBuffer chars = CharBuffer.wrap(content);
+		encoder.reset();
+		while (encoder.encode(chars, buffer, true).isOverflow()) {
+			flush(digest, checksumDigest);
+		}
+		while (encoder.flush(buffer).isOverflow()) {
+			flush(digest, checksumDigest);
+		}
+		flush(digest, checksumDigest);
+	}
+
+	private void flush(MessageDigest digest, MessageDigest checksumDigest) {
+		buffer.flip();
+		if (checksumDigest != null) {
+			buffer.mark();
+			checksumDigest.update(buffer);
+			buffer.reset();
+		}
+		digest.update(buffer);
+		buffer.clear();
+	}
+
+}
@@ -0,0 +1,23 @@
+package gate.languageanalysers;
+
+/**
+ * How a cache hit is verified to have the same content as the document.
+ */
+public enum ContentVerification {
+
+	/**
+	 * trust the hash
+	 */
+	NONE,
+
+	/**
+	 * compare content length and an independent checksum
+	 */
+	HASH,
+
+	/**
+	 * compare the complete content with the cached document
+	 */
+	FULL
+
+}
@@ -0,0 +1,180 @@
+package gate.languageanalysers;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Bounded on-heap map in front of the cache store with lock-free lookups and
+ * CLOCK eviction.
+ */
+class FrontCache<V> {
+
+	private final int capacity;
+	private final Consumer<V> evictionListener;
+
+	private final Map<HashKey, Node<V>> nodes = new ConcurrentHashMap<>();
+	private final Queue<Node<V>> clock = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger clockLength = new AtomicInteger();
+	private final AtomicBoolean compacting = new AtomicBoolean();
+
+	FrontCache(int capacity, Consumer<V> evictionListener) {
+		this.capacity = Math.max(capacity, 1);
+		this.evictionListener = evictionListener;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public V get(byte[] key) {
+		Node<V> node = nodes.get(new HashKey(key));
+		if (node == null) {
+			return null;
+		}
+		if (!node.referenced) {
+			node.referenced = true;
+		}
+		return node.value;
+	}
+
+	public void put(byte[] key, V value) {
+		Node<V> node = new Node<>(new HashKey(key), value);
+		Node<V> old = nodes.put(node.key, node);
+		clock.add(node);
+		clockLength.incrementAndGet();
+		if (old != null) {
+			evicted(old);
+			compact();
+		} else if (size.incrementAndGet() > capacity) {
+			evict();
+		}
+	}
+
+	public void remove(byte[] key) {
+		Node<V> node = nodes.remove(new HashKey(key));
+		if (node != null) {
+			size.decrementAndGet();
+			evicted(node);
+			compact();
+		}
+	}
+
+	public void removeIf(Predicate<V> predicate) {
+		Iterator<Node<V>> iterator = nodes.values().iterator();
+		while (iterator.hasNext()) {
+			Node<V> node = iterator.next();
+			if (predicate.test(node.value) && nodes.remove(node.key, node)) {
+				size.decrementAndGet();
+				evicted(node);
+			}
+		}
+		compact();
+	}
+
+	public void clear() {
+		removeIf((value) -> true);
+	}
+
+	int getClockLength() {
+		return clockLength.get();
+	}
+
+	private void evict() {
+		while (size.get() > capacity) {
+			Node<V> node = clock.poll();
+			if (node == null) {
+				return;
+			}
+			clockLength.decrementAndGet();
+			if (node.removed) {
+				continue;
+			}
+			if (node.referenced) {
+				node.referenced = false;
+				clock.add(node);
+				clockLength.incrementAndGet();
+			} else if (nodes.remove(node.key, node)) {
+				size.decrementAndGet();
+				evicted(node);
+			}
+		}
+	}
+
+	/**
+	 * Drops replaced and removed nodes from the clock, which are otherwise only
+	 * dropped by an eviction sweep, once it holds twice the capacity.
+	 */
+	private void compact() {
+		if (clockLength.get() <= capacity * 2 || !compacting.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			Iterator<Node<V>> iterator = clock.iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().removed) {
+					iterator.remove();
+				}
+			}
+			// concurrent sweeps may have polled the same nodes, so the length is counted
+			clockLength.set(clock.size());
+		} finally {
+			compacting.set(false);
+		}
+	}
+
+	private void evicted(Node<V> node) {
+		node.removed = true;
+		if (evictionListener != null) {
+			evictionListener.accept(node.value);
+		}
+	}
+
+	private static class Node<V> {
+
+		private final HashKey key;
+		private final V value;
+		private volatile boolean referenced = false;
+		private volatile boolean removed = false;
+
+		private Node(HashKey key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+
+	}
+
+	/**
+	 * Wraps a hash for content-based equality in hash maps.
+	 */
+	static class HashKey {
+
+		private final byte[] hash;
+		private final int hashCode;
+
+		HashKey(byte[] hash) {
+			this.hash = hash;
+			this.hashCode = Arrays.hashCode(hash);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof HashKey && Arrays.equals(hash, ((HashKey) obj).hash);
+		}
+
+	}
+
+}
@@ -0,0 +1,95 @@
+package gate.languageanalysers;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from int to int without boxing, used to map
+ * annotation ids while copying.
+ */
+class IntIntMap {
+
+	private static final int EMPTY = Integer.MIN_VALUE;
+
+	private int[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+
+	IntIntMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) * 2;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void put(int key, int value) {
+		if (key == EMPTY) {
+			throw new IllegalArgumentException("unsupported key " + key);
+		}
+		int slot = slot(key);
+		if (keys[slot] == EMPTY) {
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] = value;
+		if (size * 2 > keys.length) {
+			rehash();
+		}
+	}
+
+	/**
+	 * @return the value of the key or the default value, if the key is not
+	 *         contained
+	 */
+	public int get(int key, int defaultValue) {
+		if (key == EMPTY) {
+			return defaultValue;
+		}
+		int slot = slot(key);
+		return keys[slot] == EMPTY ? defaultValue : values[slot];
+	}
+
+	public boolean containsKey(int key) {
+		return key != EMPTY && keys[slot(key)] != EMPTY;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	private int slot(int key) {
+		int slot = mix(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static int mix(int key) {
+		int hash = key * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+}
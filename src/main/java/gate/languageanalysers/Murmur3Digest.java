@@ -0,0 +1,157 @@
+package gate.languageanalysers;
+
+import java.security.MessageDigest;
+
+/**
+ * Non-cryptographic 128 bit MurmurHash3 (x64 variant, seed 0) as streaming
+ * {@link MessageDigest}.
+ */
+class Murmur3Digest extends MessageDigest {
+
+	public static final String ALGORITHM = "Murmur3-128";
+
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private final byte[] block = new byte[16];
+	private int blockLength;
+	private long length;
+	private long h1;
+	private long h2;
+
+	Murmur3Digest() {
+		super(ALGORITHM);
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return 16;
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		block[blockLength++] = input;
+		length++;
+		if (blockLength == 16) {
+			processBlock(block, 0);
+			blockLength = 0;
+		}
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+		length += len;
+		int end = offset + len;
+		if (blockLength > 0) {
+			while (offset < end && blockLength < 16) {
+				block[blockLength++] = input[offset++];
+			}
+			if (blockLength < 16) {
+				return;
+			}
+			processBlock(block, 0);
+			blockLength = 0;
+		}
+		while (end - offset >= 16) {
+			processBlock(input, offset);
+			offset += 16;
+		}
+		while (offset < end) {
+			block[blockLength++] = input[offset++];
+		}
+	}
+
+	private void processBlock(byte[] bytes, int offset) {
+		long k1 = getLongLittleEndian(bytes, offset);
+		long k2 = getLongLittleEndian(bytes, offset + 8);
+
+		h1 ^= mixK1(k1);
+		h1 = Long.rotateLeft(h1, 27);
+		h1 += h2;
+		h1 = h1 * 5 + 0x52dce729;
+
+		h2 ^= mixK2(k2);
+		h2 = Long.rotateLeft(h2, 31);
+		h2 += h1;
+		h2 = h2 * 5 + 0x38495ab5;
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		long k1 = 0;
+		long k2 = 0;
+		for (int i = blockLength - 1; i >= 8; i--) {
+			k2 ^= (long) (block[i] & 0xff) << ((i - 8) * 8);
+		}
+		for (int i = Math.min(blockLength, 8) - 1; i >= 0; i--) {
+			k1 ^= (long) (block[i] & 0xff) << (i * 8);
+		}
+		if (blockLength > 8) {
+			h2 ^= mixK2(k2);
+		}
+		if (blockLength > 0) {
+			h1 ^= mixK1(k1);
+		}
+
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+		h1 += h2;
+		h2 += h1;
+
+		byte[] digest = new byte[16];
+		putLongLittleEndian(digest, 0, h1);
+		putLongLittleEndian(digest, 8, h2);
+		engineReset();
+		return digest;
+	}
+
+	@Override
+	protected void engineReset() {
+		blockLength = 0;
+		length = 0;
+		h1 = 0;
+		h2 = 0;
+	}
+
+	private static long mixK1(long k1) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		k1 *= C2;
+		return k1;
+	}
+
+	private static long mixK2(long k2) {
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		k2 *= C1;
+		return k2;
+	}
+
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	static long getLongLittleEndian(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = 7; i >= 0; i--) {
+			value = (value << 8) | (bytes[offset + i] & 0xff);
+		}
+		return value;
+	}
+
+	static void putLongLittleEndian(byte[] bytes, int offset, long value) {
+		for (int i = 0; i < 8; i++) {
+			bytes[offset + i] = (byte) (value >>> (i * 8));
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package gate.languageanalysers;
+
+import java.security.MessageDigest;
+
+/**
+ * Non-cryptographic 64 bit xxHash (seed 0) as streaming {@link MessageDigest}.
+ */
+class XxHash64Digest extends MessageDigest {
+
+	public static final String ALGORITHM = "xxHash64";
+
+	private static final long P1 = 0x9E3779B185EBCA87L;
+	private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long P3 = 0x165667B19E3779F9L;
+	private static final long P4 = 0x85EBCA77C2B2AE63L;
+	private static final long P5 = 0x27D4EB2F165667C5L;
+
+	private final byte[] stripe = new byte[32];
+	private int stripeLength;
+	private long length;
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+
+	XxHash64Digest() {
+		super(ALGORITHM);
+		engineReset();
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return 8;
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		stripe[stripeLength++] = input;
+		length++;
+		if (stripeLength == 32) {
+			processStripe(stripe, 0);
+			stripeLength = 0;
+		}
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+		length += len;
+		int end = offset + len;
+		if (stripeLength > 0) {
+			while (offset < end && stripeLength < 32) {
+				stripe[stripeLength++] = input[offset++];
+			}
+			if (stripeLength < 32) {
+				return;
+			}
+			processStripe(stripe, 0);
+			stripeLength = 0;
+		}
+		while (end - offset >= 32) {
+			processStripe(input, offset);
+			offset += 32;
+		}
+		while (offset < end) {
+			stripe[stripeLength++] = input[offset++];
+		}
+	}
+
+	private void processStripe(byte[] bytes, int offset) {
+		v1 = round(v1, Murmur3Digest.getLongLittleEndian(bytes, offset));
+		v2 = round(v2, Murmur3Digest.getLongLittleEndian(bytes, offset + 8));
+		v3 = round(v3, Murmur3Digest.getLongLittleEndian(bytes, offset + 16));
+		v4 = round(v4, Murmur3Digest.getLongLittleEndian(bytes, offset + 24));
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		long hash;
+		if (length >= 32) {
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+					+ Long.rotateLeft(v4, 18);
+			hash = mergeRound(hash, v1);
+			hash = mergeRound(hash, v2);
+			hash = mergeRound(hash, v3);
+			hash = mergeRound(hash, v4);
+		} else {
+			hash = P5;
+		}
+		hash += length;
+
+		int offset = 0;
+		while (stripeLength - offset >= 8) {
+			hash ^= round(0, Murmur3Digest.getLongLittleEndian(stripe, offset));
+			hash = Long.rotateLeft(hash, 27) * P1 + P4;
+			offset += 8;
+		}
+		if (stripeLength - offset >= 4) {
+			long value = (stripe[offset] & 0xffL) | (stripe[offset + 1] & 0xffL) << 8
+					| (stripe[offset + 2] & 0xffL) << 16 | (stripe[offset + 3] & 0xffL) << 24;
+			hash ^= value * P1;
+			hash = Long.rotateLeft(hash, 23) * P2 + P3;
+			offset += 4;
+		}
+		while (offset < stripeLength) {
+			hash ^= (stripe[offset] & 0xffL) * P5;
+			hash = Long.rotateLeft(hash, 11) * P1;
+			offset++;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= P2;
+		hash ^= hash >>> 29;
+		hash *= P3;
+		hash ^= hash >>> 32;
+
+		byte[] digest = new byte[8];
+		for (int i = 0; i < 8; i++) {
+			digest[i] = (byte) (hash >>> ((7 - i) * 8));
+		}
+		engineReset();
+		return digest;
+	}
+
+	@Override
+	protected void engineReset() {
+		stripeLength = 0;
+		length = 0;
+		v1 = P1 + P2;
+		v2 = P2;
+		v3 = 0;
+		v4 = -P1;
+	}
+
+	private static long round(long acc, long input) {
+		acc += input * P2;
+		acc = Long.rotateLeft(acc, 31);
+		acc *= P1;
+		return acc;
+	}
+
+	private static long mergeRound(long acc, long value) {
+		acc ^= round(0, value);
+		acc = acc * P1 + P4;
+		return acc;
+	}
+
+}
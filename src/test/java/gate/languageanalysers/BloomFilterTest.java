@@ -0,0 +1,87 @@
+package gate.languageanalysers;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+	@Test
+	public void testNoFalseNegativesUnderConcurrentPuts() throws Exception {
+		int threads = 8;
+		int keysPerThread = 20000;
+		BloomFilter filter = new BloomFilter(threads * keysPerThread);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < keysPerThread; i++) {
+						byte[] key = key(thread, i);
+						filter.put(key);
+						assertTrue("key " + thread + "/" + i, filter.mightContain(key));
+						// keys of other threads, which are already added or not
+						filter.mightContain(key((thread + 1) % threads, i));
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < keysPerThread; i++) {
+				assertTrue("key " + t + "/" + i, filter.mightContain(key(t, i)));
+			}
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (filter.mightContain(key(threads, i))) {
+				falsePositives++;
+			}
+		}
+		assertTrue("false positives " + falsePositives, falsePositives < 500);
+	}
+
+	@Test
+	public void testClear() {
+		BloomFilter filter = new BloomFilter(0);
+		filter.put(key(0, 0));
+		assertTrue(filter.mightContain(key(0, 0)));
+		filter.clear();
+		assertFalse(filter.mightContain(key(0, 0)));
+		assertTrue(filter.getEntries() == 0);
+	}
+
+	@Test
+	public void testResetEntries() {
+		BloomFilter filter = new BloomFilter(0);
+		for (int i = 0; i < 100; i++) {
+			filter.put(key(0, i % 10));
+		}
+		filter.resetEntries(10);
+		assertTrue(filter.getEntries() == 10);
+		assertTrue(filter.mightContain(key(0, 9)));
+	}
+
+	private static byte[] key(int thread, int i) {
+		return ByteBuffer.allocate(8).putInt(thread).putInt(i).array();
+	}
+
+}
@@ -0,0 +1,90 @@
+package gate.languageanalysers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import gate.AnnotationSet;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.relations.Relation;
+import gate.util.GateException;
+
+public class CacheReadAndCopyTest {
+
+	@BeforeClass
+	public static void initGate() throws GateException {
+		if (!Gate.isInitialised()) {
+			Gate.runInSandbox(true);
+			Gate.init();
+		}
+	}
+
+	@Test
+	public void testMapMembers() {
+		IntIntMap annotationMapping = new IntIntMap(4);
+		annotationMapping.put(0, 10);
+		annotationMapping.put(1, 11);
+		int[] members = { 1, 0 };
+		assertTrue(CacheReadAndCopy.mapMembers(members, annotationMapping));
+		assertArrayEquals(new int[] { 11, 10 }, members);
+		assertFalse(CacheReadAndCopy.mapMembers(new int[] { 0, 2 }, annotationMapping));
+	}
+
+	@Test
+	public void testCopyRelationSkipsUncopiedMembers() throws Exception {
+		Document document = Factory.newDocument("one two three");
+		try {
+			AnnotationSet annotationSet = document.getAnnotations("set");
+			Integer one = annotationSet.add(0L, 3L, "Token", Factory.newFeatureMap());
+			Integer two = annotationSet.add(4L, 7L, "Token", Factory.newFeatureMap());
+			Relation relation = annotationSet.getRelations().addRelation("pair", one, two);
+			AnnotationSet toAnnotationSet = document.getAnnotations("copy");
+			Map<Integer, Integer> annotationMapping = new HashMap<>();
+			annotationMapping.put(one, CacheReadAndCopy.copyAnnotation(toAnnotationSet, annotationSet.get(one)));
+			assertNull(CacheReadAndCopy.copyRelation(toAnnotationSet.getRelations(), relation, annotationMapping));
+			assertEquals(0, toAnnotationSet.getRelations().size());
+		} finally {
+			Factory.deleteResource(document);
+		}
+	}
+
+	@Test
+	public void testBulkCopyMapsRelationMembers() throws Exception {
+		Document fromDocument = Factory.newDocument("one two three");
+		Document toDocument = Factory.newDocument("one two three");
+		try {
+			AnnotationSet fromAnnotationSet = fromDocument.getAnnotations("set");
+			Integer one = fromAnnotationSet.add(0L, 3L, "Token", Factory.newFeatureMap());
+			Integer two = fromAnnotationSet.add(4L, 7L, "Token", Factory.newFeatureMap());
+			Integer other = fromDocument.getAnnotations("other").add(8L, 13L, "Token", Factory.newFeatureMap());
+			fromAnnotationSet.getRelations().addRelation("pair", two, one);
+			fromAnnotationSet.getRelations().addRelation("foreign", one, other);
+			// the copies get other ids than the cached annotations
+			toDocument.getAnnotations().add(0L, 13L, "Sentence", Factory.newFeatureMap());
+
+			AnnotationSet toAnnotationSet = toDocument.getAnnotations("set");
+			CacheReadAndCopy.bulkCopyAnnotationSet(fromAnnotationSet, toAnnotationSet, true);
+
+			assertEquals(2, toAnnotationSet.size());
+			assertEquals(1, toAnnotationSet.getRelations().size());
+			Relation pair = toAnnotationSet.getRelations().iterator().next();
+			assertEquals("pair", pair.getType());
+			assertEquals(4L, (long) toAnnotationSet.get(pair.getMembers()[0]).getStartNode().getOffset());
+			assertEquals(0L, (long) toAnnotationSet.get(pair.getMembers()[1]).getStartNode().getOffset());
+		} finally {
+			Factory.deleteResource(fromDocument);
+			Factory.deleteResource(toDocument);
+		}
+	}
+
+}
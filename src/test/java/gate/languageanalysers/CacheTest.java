@@ -0,0 +1,107 @@
+package gate.languageanalysers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class CacheTest {
+
+	@Test
+	public void testKeysAddedAgainDoNotGrowBloomFilter() {
+		Cache cache = Cache.getInstance("keysAddedAgainTest", null, 1000, 0, 0);
+		try {
+			long expectedEntries = cache.getBloomFilter().getExpectedEntries();
+			for (int i = 0; i < expectedEntries * 10; i++) {
+				cache.addSnapshot(key(i % 10), new byte[] { 1 });
+			}
+			assertEquals(expectedEntries, cache.getBloomFilter().getExpectedEntries());
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test
+	public void testKeysAddedDuringBloomFilterRebuildsAreFound() throws Exception {
+		int threads = 4;
+		int keysPerThread = 20000;
+		Cache cache = Cache.getInstance("bloomFilterRebuildTest");
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < keysPerThread; i++) {
+						cache.addSnapshot(key(thread * keysPerThread + i), new byte[] { 1 });
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				while (!future.isDone()) {
+					cache.rebuildBloomFilter();
+				}
+				future.get();
+			}
+			while (cache.isBloomFilterRebuilding()) {
+				Thread.sleep(10);
+			}
+			for (int i = 0; i < threads * keysPerThread; i++) {
+				assertNotNull("key " + i, cache.getSnapshot(key(i)));
+			}
+		} finally {
+			executor.shutdownNow();
+			cache.close();
+		}
+	}
+
+	@Test
+	public void testPurgedEntriesDropTheirSnapshots() throws Exception {
+		Cache cache = Cache.getInstance("purgeSnapshotsTest");
+		try {
+			byte[] purged = key(1);
+			byte[] kept = key(2);
+			cache.putEntry(purged, ByteBuffer.allocate(24).putInt(7).array());
+			cache.addSnapshot(purged, new byte[] { 1 });
+			cache.putEntry(kept, ByteBuffer.allocate(24).putInt(8).array());
+			cache.addSnapshot(kept, new byte[] { 1 });
+			cache.purgeEntries(Collections.singletonMap("purged", 7));
+			long deadline = System.currentTimeMillis() + 10000;
+			while (cache.getSnapshot(purged) != null && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertNull(cache.getSnapshot(purged));
+			assertNotNull(cache.getSnapshot(kept));
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test
+	public void testClosedCacheIsReleased() {
+		Cache cache = Cache.getInstance("closedCacheTest");
+		cache.close();
+		assertNull(Cache.getStatistics("closedCacheTest"));
+		Cache reopened = Cache.getInstance("closedCacheTest");
+		try {
+			assertNotSame(cache, reopened);
+		} finally {
+			reopened.close();
+		}
+	}
+
+	private static byte[] key(int i) {
+		return ByteBuffer.allocate(4).putInt(i).array();
+	}
+
+}
@@ -0,0 +1,34 @@
+package gate.languageanalysers;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.junit.Test;
+
+public class ContentDigesterTest {
+
+	@Test
+	public void testChunkedEncodingMatchesWholeEncoding() throws Exception {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			// one, two, three and four byte characters crossing the buffer bounds
+			content.append('a').append('\u00e4').append('\u20ac').append("\ud83d\ude00");
+		}
+		ContentDigester contentDigester = new ContentDigester();
+		for (int length : new int[] { 0, 1, 8191, 8192, 8193, content.length() }) {
+			String text = content.substring(0, length);
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			MessageDigest checksumDigest = new XxHash64Digest();
+			contentDigester.update(text, digest, checksumDigest);
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			assertArrayEquals("length " + length, MessageDigest.getInstance("SHA-256").digest(bytes),
+					digest.digest());
+			XxHash64Digest expectedChecksum = new XxHash64Digest();
+			expectedChecksum.update(bytes);
+			assertArrayEquals("length " + length, expectedChecksum.digest(), checksumDigest.digest());
+		}
+	}
+
+}
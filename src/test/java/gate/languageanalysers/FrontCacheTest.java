@@ -0,0 +1,87 @@
+package gate.languageanalysers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FrontCacheTest {
+
+	@Test
+	public void testLookupByContent() {
+		FrontCache<String> cache = new FrontCache<>(2, null);
+		cache.put(new byte[] { 1, 2 }, "a");
+		assertEquals("a", cache.get(new byte[] { 1, 2 }));
+		assertNull(cache.get(new byte[] { 2, 1 }));
+	}
+
+	@Test
+	public void testReferencedEntriesGetSecondChance() {
+		List<String> evicted = new ArrayList<>();
+		FrontCache<String> cache = new FrontCache<>(2, evicted::add);
+		cache.put(new byte[] { 1 }, "a");
+		cache.put(new byte[] { 2 }, "b");
+		cache.get(new byte[] { 1 });
+		cache.put(new byte[] { 3 }, "c");
+		assertEquals("a", cache.get(new byte[] { 1 }));
+		assertNull(cache.get(new byte[] { 2 }));
+		assertEquals("c", cache.get(new byte[] { 3 }));
+		assertEquals(1, evicted.size());
+		assertEquals("b", evicted.get(0));
+	}
+
+	@Test
+	public void testCapacityBound() {
+		List<String> evicted = new ArrayList<>();
+		FrontCache<String> cache = new FrontCache<>(10, evicted::add);
+		for (int i = 0; i < 100; i++) {
+			cache.put(new byte[] { (byte) i }, Integer.toString(i));
+		}
+		int contained = 0;
+		for (int i = 0; i < 100; i++) {
+			if (cache.get(new byte[] { (byte) i }) != null) {
+				contained++;
+			}
+		}
+		assertEquals(10, contained);
+		assertEquals(90, evicted.size());
+	}
+
+	@Test
+	public void testReplaceAndRemove() {
+		List<String> evicted = new ArrayList<>();
+		FrontCache<String> cache = new FrontCache<>(2, evicted::add);
+		cache.put(new byte[] { 1 }, "a");
+		cache.put(new byte[] { 1 }, "b");
+		assertEquals("b", cache.get(new byte[] { 1 }));
+		cache.put(new byte[] { 2 }, "c");
+		cache.removeIf("c"::equals);
+		cache.remove(new byte[] { 1 });
+		assertNull(cache.get(new byte[] { 1 }));
+		assertNull(cache.get(new byte[] { 2 }));
+		assertEquals(3, evicted.size());
+		// removed entries no longer count against the capacity
+		cache.put(new byte[] { 3 }, "d");
+		cache.put(new byte[] { 4 }, "e");
+		assertEquals("d", cache.get(new byte[] { 3 }));
+		assertEquals("e", cache.get(new byte[] { 4 }));
+	}
+
+	@Test
+	public void testClockBoundedUnderReplaceAndRemove() {
+		FrontCache<String> cache = new FrontCache<>(4, null);
+		for (int i = 0; i < 10000; i++) {
+			cache.put(new byte[] { 1 }, "a" + i);
+			cache.put(new byte[] { 2 }, "b" + i);
+			cache.remove(new byte[] { 2 });
+			assertTrue(cache.getClockLength() <= 2 * 4 + 1);
+		}
+		assertEquals("a9999", cache.get(new byte[] { 1 }));
+		assertNull(cache.get(new byte[] { 2 }));
+	}
+
+}
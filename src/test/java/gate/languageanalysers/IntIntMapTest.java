@@ -0,0 +1,69 @@
+package gate.languageanalysers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IntIntMapTest {
+
+	@Test
+	public void testPutAndGet() {
+		IntIntMap map = new IntIntMap(4);
+		map.put(1, 10);
+		map.put(-1, 20);
+		map.put(1, 30);
+		assertEquals(2, map.size());
+		assertEquals(30, map.get(1, -1));
+		assertEquals(20, map.get(-1, -1));
+		assertEquals(-1, map.get(2, -1));
+		assertTrue(map.containsKey(-1));
+		assertFalse(map.containsKey(2));
+	}
+
+	@Test
+	public void testRehashKeepsAllKeys() {
+		IntIntMap map = new IntIntMap(4);
+		// dense and strided keys, so probing runs over colliding slots
+		for (int i = 0; i < 10000; i++) {
+			map.put(i, i + 1);
+			map.put((i + 1) << 16, -i);
+		}
+		map.put(Integer.MAX_VALUE, 42);
+		assertEquals(20001, map.size());
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i + 1, map.get(i, 0));
+			assertEquals(-i, map.get((i + 1) << 16, 1));
+		}
+		assertEquals(42, map.get(Integer.MAX_VALUE, 0));
+		assertEquals(-1, map.get(-5, -1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMinValueKeyRejected() {
+		new IntIntMap(4).put(Integer.MIN_VALUE, 1);
+	}
+
+	@Test
+	public void testMinValueKeyNotContained() {
+		IntIntMap map = new IntIntMap(4);
+		map.put(0, 1);
+		assertFalse(map.containsKey(Integer.MIN_VALUE));
+		assertEquals(-1, map.get(Integer.MIN_VALUE, -1));
+	}
+
+	@Test
+	public void testClear() {
+		IntIntMap map = new IntIntMap(4);
+		for (int i = 0; i < 100; i++) {
+			map.put(i, i);
+		}
+		map.clear();
+		assertEquals(0, map.size());
+		assertFalse(map.containsKey(5));
+		map.put(5, 6);
+		assertEquals(6, map.get(5, 0));
+	}
+
+}
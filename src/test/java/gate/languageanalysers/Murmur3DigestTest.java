@@ -0,0 +1,54 @@
+package gate.languageanalysers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class Murmur3DigestTest {
+
+	@Test
+	public void testKnownHashes() {
+		assertHash(0L, 0L, "");
+		assertHash(0xE271865701F54561L, 0x7EAF87E42BBA7D87L, "foo");
+		assertHash(0x629942693E10F867L, 0x92DB0B82BAEB5347L, "hell");
+		// two blocks plus 11 byte tail
+		assertHash(0xE34BBC7BBC071B6CL, 0x7A433CA9C49A9347L, "The quick brown fox jumps over the lazy dog");
+	}
+
+	@Test
+	public void testChunkedUpdates() {
+		byte[] bytes = new byte[70];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 31 + 7);
+		}
+		Murmur3Digest digest = new Murmur3Digest();
+		for (int length = 0; length <= bytes.length; length++) {
+			digest.update(bytes, 0, length);
+			byte[] expected = digest.digest();
+			for (int chunk = 1; chunk <= 17; chunk++) {
+				for (int offset = 0; offset < length; offset += chunk) {
+					digest.update(bytes, offset, Math.min(chunk, length - offset));
+				}
+				assertArrayEquals("length " + length + " in chunks of " + chunk, expected, digest.digest());
+			}
+			for (int offset = 0; offset < length; offset++) {
+				digest.update(bytes[offset]);
+			}
+			assertArrayEquals("length " + length + " byte by byte", expected, digest.digest());
+		}
+	}
+
+	private static void assertHash(long h1, long h2, String string) {
+		Murmur3Digest digest = new Murmur3Digest();
+		ByteBuffer hash = ByteBuffer.wrap(digest.digest(string.getBytes(StandardCharsets.UTF_8)))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(h1, hash.getLong());
+		assertEquals(h2, hash.getLong());
+	}
+
+}
@@ -0,0 +1,50 @@
+package gate.languageanalysers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class XxHash64DigestTest {
+
+	@Test
+	public void testKnownHashes() {
+		assertEquals(0xEF46DB3751D8E999L, hash(""));
+		assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+		assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+		// 32 byte stripe plus 7 byte tail
+		assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+	}
+
+	@Test
+	public void testChunkedUpdates() {
+		byte[] bytes = new byte[100];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 31 + 7);
+		}
+		XxHash64Digest digest = new XxHash64Digest();
+		for (int length = 0; length <= bytes.length; length++) {
+			digest.update(bytes, 0, length);
+			byte[] expected = digest.digest();
+			for (int chunk = 1; chunk <= 33; chunk++) {
+				for (int offset = 0; offset < length; offset += chunk) {
+					digest.update(bytes, offset, Math.min(chunk, length - offset));
+				}
+				assertArrayEquals("length " + length + " in chunks of " + chunk, expected, digest.digest());
+			}
+			for (int offset = 0; offset < length; offset++) {
+				digest.update(bytes[offset]);
+			}
+			assertArrayEquals("length " + length + " byte by byte", expected, digest.digest());
+		}
+	}
+
+	private static long hash(String string) {
+		XxHash64Digest digest = new XxHash64Digest();
+		return ByteBuffer.wrap(digest.digest(string.getBytes(StandardCharsets.UTF_8))).getLong();
+	}
+
+}